@@ -0,0 +1,165 @@
+package com.qxtx.idea.statusbar;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.telephony.CellInfo;
+import android.telephony.CellInfoCdma;
+import android.telephony.CellInfoGsm;
+import android.telephony.CellInfoLte;
+import android.telephony.CellInfoWcdma;
+import android.telephony.CellSignalStrength;
+import android.telephony.TelephonyManager;
+import android.util.SparseIntArray;
+import android.util.SparseLongArray;
+
+import java.util.List;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 21:40
+ * <p><b>Description</b></p> 基于小区信息的sim信号等级提供者，用于安卓9以下无法直接获取{@link android.telephony.SignalStrength}的场景。
+ * <pre>
+ *  · {@link TelephonyManager#getAllCellInfo()}可能阻塞在基带的查询上，因此只在独立的后台线程中调用
+ *  · 查询总是立即返回缓存的信号等级，缓存超过最大有效期时，在后台线程中重新获取
+ *  · 后台获取的信号等级与缓存不同时，通过{@link OnCellLevelChangedListener}通知
+ *  · 后台线程在第一次需要获取时才启动，{@link #release()}后停止
+ *  · 线程安全
+ * </pre>
+ */
+final class CellInfoProvider {
+
+    /** 缓存的最大有效期 */
+    static final long MAX_AGE_MS = 10_000;
+
+    private final Object lock = new Object();
+
+    /** 以subId为键的信号等级缓存，以及缓存的时间 */
+    private final SparseIntArray levels = new SparseIntArray(2);
+    private final SparseLongArray updatedAt = new SparseLongArray(2);
+    /** 正在后台获取的subId */
+    private final SparseIntArray pending = new SparseIntArray(2);
+
+    private HandlerThread thread = null;
+    private Handler handler = null;
+
+    private final OnCellLevelChangedListener listener;
+
+    /**
+     * 信号等级改变的监听器，在后台线程中回调
+     */
+    interface OnCellLevelChangedListener {
+        /**
+         * 后台获取的信号等级与缓存不同
+         * @param subId sim卡id
+         * @param level 新的信号等级
+         */
+        void onCellLevelChanged(int subId, int level);
+    }
+
+    CellInfoProvider(OnCellLevelChangedListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 获取信号等级，立即返回。缓存不存在或已过期时，在后台线程中重新获取
+     * @param subId        sim卡id
+     * @param tm           该sim卡的{@link TelephonyManager}对象
+     * @param defaultLevel 无缓存时返回的信号等级
+     * @return 缓存的信号等级，无缓存时返回defaultLevel
+     */
+    int getLevel(int subId, TelephonyManager tm, int defaultLevel) {
+        synchronized (lock) {
+            int index = levels.indexOfKey(subId);
+            boolean expired = index < 0 || SystemClock.uptimeMillis() - updatedAt.get(subId) > MAX_AGE_MS;
+            if (expired && tm != null && pending.indexOfKey(subId) < 0) {
+                pending.put(subId, 1);
+                obtainHandlerLocked().post(() -> fetch(subId, tm));
+            }
+            return index < 0 ? defaultLevel : levels.valueAt(index);
+        }
+    }
+
+    /**
+     * 停止后台线程，并清空缓存
+     */
+    void release() {
+        synchronized (lock) {
+            if (thread != null) {
+                thread.quit();
+                thread = null;
+                handler = null;
+            }
+            levels.clear();
+            updatedAt.clear();
+            pending.clear();
+        }
+    }
+
+    private Handler obtainHandlerLocked() {
+        if (handler == null) {
+            thread = new HandlerThread("IdeaStatusbar-cellinfo", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    /** 在后台线程中获取信号等级 */
+    private void fetch(int subId, TelephonyManager tm) {
+        int level = -1;
+        try {
+            level = resolveLevel(tm.getAllCellInfo());
+        } catch (Exception e) {
+            StatusBarLog.e("获取小区信息失败：" + e.getMessage());
+        }
+
+        boolean changed;
+        synchronized (lock) {
+            if (pending.indexOfKey(subId) < 0) {
+                //获取期间已被释放
+                return;
+            }
+            pending.delete(subId);
+            if (level < 0) {
+                return;
+            }
+            int index = levels.indexOfKey(subId);
+            changed = index < 0 || levels.valueAt(index) != level;
+            levels.put(subId, level);
+            updatedAt.put(subId, SystemClock.uptimeMillis());
+        }
+
+        if (changed && listener != null) {
+            listener.onCellLevelChanged(subId, level);
+        }
+    }
+
+    /**
+     * 从小区信息中解析信号等级
+     * @param cellInfoList 小区信息
+     * @return 信号等级，无法解析时返回-1
+     */
+    private static int resolveLevel(List<CellInfo> cellInfoList) {
+        if (cellInfoList == null) {
+            return -1;
+        }
+        CellSignalStrength strength = null;
+        for (CellInfo cellInfo : cellInfoList) {
+            if (cellInfo instanceof CellInfoGsm) {
+                strength = ((CellInfoGsm) cellInfo).getCellSignalStrength();
+            } else if (cellInfo instanceof CellInfoCdma) {
+                strength = ((CellInfoCdma) cellInfo).getCellSignalStrength();
+                break;
+            } else if (cellInfo instanceof CellInfoWcdma) {
+                strength = ((CellInfoWcdma) cellInfo).getCellSignalStrength();
+                break;
+            } else if (cellInfo instanceof CellInfoLte) {
+                strength = ((CellInfoLte) cellInfo).getCellSignalStrength();
+                break;
+            }
+        }
+        return strength == null ? -1 : strength.getLevel();
+    }
+}
@@ -0,0 +1,136 @@
+package com.qxtx.idea.statusbar;
+
+import java.util.Arrays;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 17:40
+ * <p><b>Description</b></p> sim信号等级的迟滞过滤器，抑制弱信号环境下信号等级在相邻两格之间来回跳动。
+ * <pre>
+ *  · 新的信号等级与当前等级相差达到跳变阈值时，立即生效
+ *  · 否则作为候选等级，持续保持一段驻留时间后才生效；驻留期间等级回到当前值或变为其它值，则重新计时
+ *  · 驻留时间为0时不过滤
+ *  · 每个卡槽独立过滤，出现更大的slotId时自动扩容
+ *  · 只应在事件引擎线程中调用，策略配置除外
+ * </pre>
+ */
+final class SignalLevelFilter {
+
+    /** 信号等级暂不生效 */
+    static final int LEVEL_PENDING = -1;
+
+    private volatile long dwellMs = 2000;
+    private volatile int jumpThreshold = 2;
+
+    /** 每个卡槽的候选等级，小于0表示没有候选等级 */
+    private int[] candidates = new int[0];
+    /** 每个卡槽的候选等级出现的时间 */
+    private long[] candidateSince = new long[0];
+
+    /**
+     * 设置过滤策略
+     * @param dwellMs       候选等级需要保持的时间，单位为毫秒
+     * @param jumpThreshold 立即生效的最小等级差
+     */
+    void set(long dwellMs, int jumpThreshold) {
+        this.dwellMs = Math.max(0, dwellMs);
+        this.jumpThreshold = Math.max(1, jumpThreshold);
+    }
+
+    /**
+     * 一个新的信号等级到来
+     * @param slotId  卡槽id
+     * @param current 当前生效的信号等级
+     * @param level   新的信号等级
+     * @param now     当前时间，基于{@link android.os.SystemClock#uptimeMillis()}
+     * @return 应该生效的信号等级。暂不生效时返回{@link #LEVEL_PENDING}
+     */
+    int filter(int slotId, int current, int level, long now) {
+        ensureCapacity(slotId + 1);
+        if (level == current) {
+            candidates[slotId] = -1;
+            return LEVEL_PENDING;
+        }
+
+        long dwell = dwellMs;
+        if (dwell == 0 || Math.abs(level - current) >= jumpThreshold) {
+            candidates[slotId] = -1;
+            return level;
+        }
+
+        if (candidates[slotId] != level) {
+            candidates[slotId] = level;
+            candidateSince[slotId] = now;
+            return LEVEL_PENDING;
+        }
+        return poll(slotId, now);
+    }
+
+    /**
+     * 检查候选等级是否已经保持足够的时间
+     * @param slotId 卡槽id
+     * @param now    当前时间
+     * @return 应该生效的信号等级。暂不生效或没有候选等级时返回{@link #LEVEL_PENDING}
+     */
+    int poll(int slotId, long now) {
+        if (slotId >= candidates.length || candidates[slotId] < 0) {
+            return LEVEL_PENDING;
+        }
+        if (now - candidateSince[slotId] < dwellMs) {
+            return LEVEL_PENDING;
+        }
+        int level = candidates[slotId];
+        candidates[slotId] = -1;
+        return level;
+    }
+
+    /**
+     * 获取最早到期的候选等级的生效时间
+     * @return 生效时间，没有候选等级时返回{@link Long#MAX_VALUE}
+     */
+    long nextDeadline() {
+        long deadline = Long.MAX_VALUE;
+        long dwell = dwellMs;
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i] >= 0) {
+                deadline = Math.min(deadline, candidateSince[i] + dwell);
+            }
+        }
+        return deadline;
+    }
+
+    /**
+     * 获取卡槽数量
+     * @return 卡槽数量
+     */
+    int getSlotCount() {
+        return candidates.length;
+    }
+
+    /**
+     * 丢弃指定卡槽的候选等级
+     * @param slotId 卡槽id
+     */
+    void reset(int slotId) {
+        if (slotId >= 0 && slotId < candidates.length) {
+            candidates[slotId] = -1;
+        }
+    }
+
+    /**
+     * 丢弃全部候选等级，保留策略配置
+     */
+    void reset() {
+        Arrays.fill(candidates, -1);
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= candidates.length) {
+            return;
+        }
+        int oldSize = candidates.length;
+        candidates = Arrays.copyOf(candidates, size);
+        candidateSince = Arrays.copyOf(candidateSince, size);
+        Arrays.fill(candidates, oldSize, size, -1);
+    }
+}
@@ -0,0 +1,106 @@
+package com.qxtx.idea.statusbar;
+
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+import android.telephony.AccessNetworkConstants;
+import android.telephony.SignalStrengthUpdateRequest;
+import android.telephony.SignalThresholdInfo;
+import android.telephony.TelephonyManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 22:10
+ * <p><b>Description</b></p> sim信号强度的上报门限，使基带只在信号等级跨越边界时上报，减少信号强度回调的次数。
+ * <pre>
+ *  · 门限取自系统默认的运营商配置，4个门限对应0~4共5格信号等级
+ *  · 覆盖GSM(RSSI)、WCDMA(RSCP)、LTE(RSRP)、NR(SSRSRP)四种接入网络
+ *  · 仅安卓12及以上支持，其它版本仍依赖{@link SignalLevelFilter}在进程内过滤
+ *  · 系统要求调用者拥有MODIFY_PHONE_STATE权限或运营商权限，普通应用没有，因此只对拥有运营商权限的sim卡生效，
+ *    其它情况跳过设置，同样依赖{@link SignalLevelFilter}
+ *  · 跳过或设置失败时不影响信号强度的监听，只是回调次数不会减少
+ * </pre>
+ */
+final class SignalThresholds {
+
+    private static final int[] GSM_RSSI_THRESHOLDS = {-107, -103, -97, -89};
+    private static final int[] WCDMA_RSCP_THRESHOLDS = {-115, -105, -95, -85};
+    private static final int[] LTE_RSRP_THRESHOLDS = {-128, -118, -108, -98};
+    private static final int[] NR_SSRSRP_THRESHOLDS = {-110, -90, -80, -65};
+
+    /** 所有sim卡共用的请求对象，设置与清除时需要使用同一个对象 */
+    private static volatile Object sharedRequest = null;
+
+    private SignalThresholds() { }
+
+    /**
+     * 为目标sim卡设置信号强度的上报门限
+     * @param subTm 目标sim卡的{@link TelephonyManager}对象
+     * @return 已设置的请求对象，需要在停止监听时传给{@link #clear(TelephonyManager, Object)}；不支持或设置失败时返回null
+     */
+    static Object apply(TelephonyManager subTm) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || subTm == null) {
+            return null;
+        }
+        try {
+            if (!subTm.hasCarrierPrivileges()) {
+                StatusBarLog.d("没有运营商权限，不设置信号强度上报门限");
+                return null;
+            }
+            SignalStrengthUpdateRequest request = obtainRequest();
+            subTm.setSignalStrengthUpdateRequest(request);
+            return request;
+        } catch (Exception e) {
+            StatusBarLog.e("设置信号强度上报门限失败：" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 清除已设置的上报门限
+     * @param subTm   目标sim卡的{@link TelephonyManager}对象
+     * @param request {@link #apply(TelephonyManager)}返回的请求对象，为null时忽略
+     */
+    static void clear(TelephonyManager subTm, Object request) {
+        if (request == null || subTm == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.S) {
+            return;
+        }
+        try {
+            subTm.clearSignalStrengthUpdateRequest((SignalStrengthUpdateRequest) request);
+        } catch (Exception ignore) { }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.S)
+    private static SignalStrengthUpdateRequest obtainRequest() {
+        Object request = sharedRequest;
+        if (request == null) {
+            List<SignalThresholdInfo> infos = new ArrayList<>(4);
+            infos.add(buildInfo(AccessNetworkConstants.AccessNetworkType.GERAN,
+                    SignalThresholdInfo.SIGNAL_MEASUREMENT_TYPE_RSSI, GSM_RSSI_THRESHOLDS));
+            infos.add(buildInfo(AccessNetworkConstants.AccessNetworkType.UTRAN,
+                    SignalThresholdInfo.SIGNAL_MEASUREMENT_TYPE_RSCP, WCDMA_RSCP_THRESHOLDS));
+            infos.add(buildInfo(AccessNetworkConstants.AccessNetworkType.EUTRAN,
+                    SignalThresholdInfo.SIGNAL_MEASUREMENT_TYPE_RSRP, LTE_RSRP_THRESHOLDS));
+            infos.add(buildInfo(AccessNetworkConstants.AccessNetworkType.NGRAN,
+                    SignalThresholdInfo.SIGNAL_MEASUREMENT_TYPE_SSRSRP, NR_SSRSRP_THRESHOLDS));
+            //息屏时不需要上报，状态栏不可见
+            request = new SignalStrengthUpdateRequest.Builder()
+                    .setSignalThresholdInfos(infos)
+                    .setReportingRequestedWhileIdle(false)
+                    .build();
+            sharedRequest = request;
+        }
+        return (SignalStrengthUpdateRequest) request;
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.S)
+    private static SignalThresholdInfo buildInfo(int ran, int measurementType, int[] thresholds) {
+        return new SignalThresholdInfo.Builder()
+                .setRadioAccessNetworkType(ran)
+                .setSignalMeasurementType(measurementType)
+                .setThresholds(thresholds)
+                .build();
+    }
+}
@@ -0,0 +1,178 @@
+package com.qxtx.idea.statusbar;
+
+import android.telephony.ServiceState;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 22:30
+ * <p><b>Description</b></p> 紧凑的sim卡记录，把状态栏用到的sim卡字段打包到一个long中，复制与比较只需一次赋值或一次相等判断。
+ * <pre>
+ *  · 低32位为subId；高32位依次为slotId(8位)、sim卡状态(8位)、数据业务注册状态(4位)、漫游(1位)、仅紧急呼叫(1位)、信号等级(4位)
+ *  · 只保留{@link ServiceState}中用到的字段，不持有{@link ServiceState}对象本身
+ *  · 超出位宽的取值会被截断，slotId上限为255，信号等级上限为15
+ *  · 只包含静态方法，线程安全
+ * </pre>
+ */
+public final class SimRecord {
+
+    private static final int SLOT_SHIFT = 32;
+    private static final int SIM_STATE_SHIFT = 40;
+    private static final int DATA_REG_SHIFT = 48;
+    private static final int ROAMING_SHIFT = 52;
+    private static final int EMERGENCY_SHIFT = 53;
+    private static final int LEVEL_SHIFT = 56;
+
+    private static final long SUB_ID_MASK = 0xFFFFFFFFL;
+    private static final long BYTE_MASK = 0xFFL;
+    private static final long NIBBLE_MASK = 0xFL;
+
+    private static final long LEVEL_BITS = NIBBLE_MASK << LEVEL_SHIFT;
+
+    private static final String DATA_REG_FIELD = "mDataRegState=";
+    private static final String EMERGENCY_FIELD = "mIsEmergencyOnly=";
+
+    private SimRecord() { }
+
+    /**
+     * 打包sim卡记录
+     * @param slotId        卡槽id
+     * @param subId         sim卡id
+     * @param simState      sim卡状态，取值见{@link android.telephony.TelephonyManager#SIM_STATE_READY}等常量
+     * @param dataRegState  数据业务注册状态，取值见{@link ServiceState#STATE_IN_SERVICE}等常量
+     * @param roaming       是否处于漫游
+     * @param emergencyOnly 是否仅可紧急呼叫
+     * @param level         信号等级
+     * @return 打包后的记录
+     */
+    public static long pack(int slotId, int subId, int simState, int dataRegState,
+                            boolean roaming, boolean emergencyOnly, int level) {
+        return (subId & SUB_ID_MASK)
+                | ((slotId & BYTE_MASK) << SLOT_SHIFT)
+                | ((simState & BYTE_MASK) << SIM_STATE_SHIFT)
+                | ((dataRegState & NIBBLE_MASK) << DATA_REG_SHIFT)
+                | ((roaming ? 1L : 0L) << ROAMING_SHIFT)
+                | ((emergencyOnly ? 1L : 0L) << EMERGENCY_SHIFT)
+                | ((level & NIBBLE_MASK) << LEVEL_SHIFT);
+    }
+
+    /**
+     * 从服务状态中提取用到的字段，打包sim卡记录
+     * @param slotId       卡槽id
+     * @param subId        sim卡id
+     * @param simState     sim卡状态
+     * @param serviceState sim卡的服务状态，为null时视为数据业务已关闭
+     * @param level        信号等级
+     * @return 打包后的记录
+     */
+    public static long pack(int slotId, int subId, int simState, ServiceState serviceState, int level) {
+        int dataRegState = ServiceState.STATE_POWER_OFF;
+        boolean roaming = false;
+        boolean emergencyOnly = false;
+        if (serviceState != null) {
+            //数据业务注册状态和紧急呼叫状态均为隐藏接口，从字符串中解析，只生成一次字符串
+            String s = serviceState.toString();
+            dataRegState = parseDataRegState(s);
+            emergencyOnly = s.contains(EMERGENCY_FIELD + "true");
+            roaming = serviceState.getRoaming();
+        }
+        return pack(slotId, subId, simState, dataRegState, roaming, emergencyOnly, level);
+    }
+
+    /**
+     * 从{@link ServiceState#toString()}的结果中解析数据业务注册状态
+     * @param serviceState {@link ServiceState#toString()}的结果
+     * @return 数据业务注册状态，无法解析时返回{@link ServiceState#STATE_POWER_OFF}
+     */
+    static int parseDataRegState(String serviceState) {
+        int fieldIndex = serviceState.indexOf(DATA_REG_FIELD);
+        if (fieldIndex < 0 || fieldIndex + DATA_REG_FIELD.length() >= serviceState.length()) {
+            return ServiceState.STATE_POWER_OFF;
+        }
+        return serviceState.charAt(fieldIndex + DATA_REG_FIELD.length()) - '0';
+    }
+
+    public static int getSubId(long record) {
+        return (int) (record & SUB_ID_MASK);
+    }
+
+    public static int getSlotId(long record) {
+        return (int) ((record >>> SLOT_SHIFT) & BYTE_MASK);
+    }
+
+    public static int getSimState(long record) {
+        return (int) ((record >>> SIM_STATE_SHIFT) & BYTE_MASK);
+    }
+
+    public static int getDataRegState(long record) {
+        return (int) ((record >>> DATA_REG_SHIFT) & NIBBLE_MASK);
+    }
+
+    public static boolean isRoaming(long record) {
+        return ((record >>> ROAMING_SHIFT) & 1L) != 0;
+    }
+
+    public static boolean isEmergencyOnly(long record) {
+        return ((record >>> EMERGENCY_SHIFT) & 1L) != 0;
+    }
+
+    public static int getLevel(long record) {
+        return (int) ((record >>> LEVEL_SHIFT) & NIBBLE_MASK);
+    }
+
+    /**
+     * 数据业务是否已注册
+     * @param record sim卡记录
+     * @return 是否已注册
+     */
+    public static boolean isDataReg(long record) {
+        return getDataRegState(record) == ServiceState.STATE_IN_SERVICE;
+    }
+
+    /**
+     * 替换信号等级
+     * @param record sim卡记录
+     * @param level  新的信号等级
+     * @return 新的记录
+     */
+    public static long withLevel(long record, int level) {
+        return (record & ~LEVEL_BITS) | ((level & NIBBLE_MASK) << LEVEL_SHIFT);
+    }
+
+    public static long withSubId(long record, int subId) {
+        return (record & ~SUB_ID_MASK) | (subId & SUB_ID_MASK);
+    }
+
+    public static long withSimState(long record, int simState) {
+        return (record & ~(BYTE_MASK << SIM_STATE_SHIFT)) | ((simState & BYTE_MASK) << SIM_STATE_SHIFT);
+    }
+
+    /**
+     * 替换服务状态相关的字段
+     * @param record       sim卡记录
+     * @param serviceState 新的服务状态
+     * @return 新的记录
+     */
+    public static long withServiceState(long record, ServiceState serviceState) {
+        return pack(getSlotId(record), getSubId(record), getSimState(record), serviceState, getLevel(record));
+    }
+
+    /**
+     * 除信号等级外，两条记录是否相同
+     * @param a sim卡记录
+     * @param b sim卡记录
+     * @return 是否相同
+     */
+    public static boolean equalsIgnoreLevel(long a, long b) {
+        return ((a ^ b) & ~LEVEL_BITS) == 0;
+    }
+
+    public static String toString(long record) {
+        return "slotId=" + getSlotId(record)
+                + ", subId=" + getSubId(record)
+                + ", simState=" + getSimState(record)
+                + ", dataRegState=" + getDataRegState(record)
+                + ", roaming=" + isRoaming(record)
+                + ", emergencyOnly=" + isEmergencyOnly(record)
+                + ", signalLevel=" + getLevel(record);
+    }
+}
@@ -0,0 +1,203 @@
+package com.qxtx.idea.statusbar;
+
+import android.telephony.ServiceState;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 16:48
+ * <p><b>Description</b></p> 以卡槽为索引的sim信息存储。
+ * <pre>
+ *  · 容量由卡槽数量决定，slotId即为数组下标，出现更大的slotId时自动扩容
+ *  · 写时复制：每次修改都生成新的卡槽数组，已发布的数组不会再被修改
+ *  · 存储中的{@link StatusBarMgr.SimInfo}对象总是不可变的，任一字段改变时，替换为新的对象
+ *  · sim信息只保存打包的{@link SimRecord}记录，是否改变只需比较一个long，不保留{@link ServiceState}对象
+ *  · 只有内容真正改变时，才会生成新的快照；没有改变时，多次获取的快照为同一个对象，只在库内部共享，
+ *    交给状态栏时由{@link com.qxtx.idea.statusbar.view.StatusBarState}复制
+ *  · 只应在事件引擎线程中修改
+ * </pre>
+ */
+final class SimStore {
+
+    private SimInfoSlots slots;
+
+    /** 供sim信息按需查询{@link ServiceState} */
+    private final SubscriptionCache subscriptionCache;
+
+    /** 当前内容的快照，内容改变后置空，下一次获取时重新生成 */
+    private HashMap<Integer, StatusBarMgr.SimInfo> snapshot = null;
+
+    /**
+     * @param slotCount         卡槽数量
+     * @param subscriptionCache 订阅信息缓存，供sim信息按需查询{@link ServiceState}，可以为null
+     */
+    SimStore(int slotCount, SubscriptionCache subscriptionCache) {
+        slots = new SimInfoSlots(Math.max(1, slotCount));
+        this.subscriptionCache = subscriptionCache;
+    }
+
+    /**
+     * 获取卡槽数量
+     * @return 卡槽数量
+     */
+    int getSlotCount() {
+        return slots.items.length;
+    }
+
+    /**
+     * 获取指定卡槽的sim信息
+     * @param slotId 卡槽id
+     * @return sim信息，不可修改。卡槽为空时返回null
+     */
+    StatusBarMgr.SimInfo get(int slotId) {
+        if (slotId < 0 || slotId >= slots.items.length) {
+            return null;
+        }
+        return slots.items[slotId];
+    }
+
+    /**
+     * 获取sim卡数量
+     * @return sim卡数量
+     */
+    int size() {
+        return slots.count;
+    }
+
+    boolean isEmpty() {
+        return slots.count == 0;
+    }
+
+    /**
+     * 更新指定卡槽的sim信息，只有内容改变时才替换
+     * @param slotId       卡槽id
+     * @param subId        sim卡id
+     * @param simState     sim卡状态
+     * @param serviceState sim卡的服务状态，只提取用到的字段
+     * @param level        信号等级
+     * @return 内容是否改变
+     */
+    boolean put(int slotId, int subId, int simState, ServiceState serviceState, int level) {
+        if (slotId < 0) {
+            return false;
+        }
+        return put(slotId, SimRecord.pack(slotId, subId, simState, serviceState, level));
+    }
+
+    private boolean put(int slotId, long record) {
+        StatusBarMgr.SimInfo old = get(slotId);
+        if (old != null && old.getRecord() == record) {
+            return false;
+        }
+
+        StatusBarMgr.SimInfo info = new StatusBarMgr.SimInfo(record, subscriptionCache);
+        info.freeze();
+        slots = slots.with(slotId, info);
+        snapshot = null;
+        return true;
+    }
+
+    /**
+     * 更新指定卡槽的信号等级
+     * @param slotId 卡槽id
+     * @param level  信号等级
+     * @return 内容是否改变。卡槽为空时返回false
+     */
+    boolean setSignalLevel(int slotId, int level) {
+        StatusBarMgr.SimInfo old = get(slotId);
+        if (old == null) {
+            return false;
+        }
+        return put(slotId, SimRecord.withLevel(old.getRecord(), level));
+    }
+
+    /**
+     * 移除指定卡槽的sim信息
+     * @param slotId 卡槽id
+     * @return 内容是否改变
+     */
+    boolean remove(int slotId) {
+        if (get(slotId) == null) {
+            return false;
+        }
+        slots = slots.with(slotId, null);
+        snapshot = null;
+        return true;
+    }
+
+    /**
+     * 移除全部sim信息
+     * @return 内容是否改变
+     */
+    boolean clear() {
+        if (slots.count == 0) {
+            return false;
+        }
+        slots = new SimInfoSlots(slots.items.length);
+        snapshot = null;
+        return true;
+    }
+
+    /**
+     * 获取当前内容的快照。内容未改变时，总是返回同一个对象
+     * @return sim信息集，键为slotId。只在库内部共享，快照及其中的对象均不应被修改
+     */
+    HashMap<Integer, StatusBarMgr.SimInfo> snapshot() {
+        HashMap<Integer, StatusBarMgr.SimInfo> result = snapshot;
+        if (result == null) {
+            result = new HashMap<>(slots.items.length * 2);
+            StatusBarMgr.SimInfo[] items = slots.items;
+            for (int i = 0; i < items.length; i++) {
+                if (items[i] != null) {
+                    result.put(i, items[i]);
+                }
+            }
+            snapshot = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * 卡槽数组以及非空卡槽的数量，不可变
+     */
+    private static final class SimInfoSlots {
+
+        private final StatusBarMgr.SimInfo[] items;
+        private final int count;
+
+        private SimInfoSlots(int size) {
+            this(new StatusBarMgr.SimInfo[size], 0);
+        }
+
+        private SimInfoSlots(StatusBarMgr.SimInfo[] items, int count) {
+            this.items = items;
+            this.count = count;
+        }
+
+        /**
+         * 替换指定卡槽的sim信息，生成新的卡槽数组。slotId超出容量时扩容
+         * @param slotId 卡槽id
+         * @param info   新的sim信息，为null时表示空卡槽
+         * @return 新的卡槽数组
+         */
+        private SimInfoSlots with(int slotId, StatusBarMgr.SimInfo info) {
+            StatusBarMgr.SimInfo[] result = Arrays.copyOf(items, Math.max(items.length, slotId + 1));
+            StatusBarMgr.SimInfo old = result[slotId];
+            result[slotId] = info;
+            int newCount = count;
+            if (old == null && info != null) {
+                newCount++;
+            } else if (old != null && info == null) {
+                newCount--;
+            }
+            return new SimInfoSlots(result, newCount);
+        }
+    }
+}
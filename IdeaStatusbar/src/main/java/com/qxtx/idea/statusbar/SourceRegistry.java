@@ -0,0 +1,134 @@
+package com.qxtx.idea.statusbar;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 14:05
+ * <p><b>Description</b></p> 事件源注册表，以引用计数的方式管理状态栏全部事件源的注册。
+ * <pre>
+ *  · 只要还有任一界面正在显示状态栏，事件源就保持注册状态，界面之间的切换不会引起重复的注册/反注册
+ *  · 最后一个引用被释放后，等待一段宽限时间，期间没有新的引用，才真正反注册所有事件源
+ *  · 所有方法都应在UI线程中调用
+ * </pre>
+ */
+final class SourceRegistry {
+
+    /** 默认的反注册宽限时间，单位为毫秒 */
+    static final long DEF_RELEASE_DELAY_MS = 5000L;
+
+    /**
+     * 事件源的实际注册/反注册操作
+     */
+    interface Sources {
+
+        /** 注册所有事件源 */
+        void onRegister();
+
+        /** 反注册所有事件源 */
+        void onUnregister();
+
+        /** 事件源仍处于注册状态，被新的引用复用 */
+        void onReuse();
+    }
+
+    private final Sources sources;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** 持有引用的对象集，以对象的引用相等区分 */
+    private final Set<Object> owners = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** 事件源当前是否处于注册状态 */
+    private boolean registered = false;
+
+    private long releaseDelayMs = DEF_RELEASE_DELAY_MS;
+
+    private final Runnable releaseRunnable = this::unregister;
+
+    SourceRegistry(Sources sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * 设置反注册宽限时间
+     * @param delayMs 宽限时间，单位为毫秒。小于等于0时，最后一个引用被释放后立即反注册
+     */
+    void setReleaseDelay(long delayMs) {
+        releaseDelayMs = Math.max(0, delayMs);
+    }
+
+    /**
+     * 获取一个引用。如果事件源尚未注册，则立即注册
+     * @param owner 引用的持有者
+     */
+    void acquire(Object owner) {
+        owners.add(owner);
+        mainHandler.removeCallbacks(releaseRunnable);
+
+        if (!registered) {
+            registered = true;
+            sources.onRegister();
+        } else {
+            sources.onReuse();
+        }
+    }
+
+    /**
+     * 释放一个引用。如果已经没有任何引用，则在宽限时间之后反注册事件源
+     * @param owner 引用的持有者
+     */
+    void release(Object owner) {
+        if (!owners.remove(owner)) {
+            return;
+        }
+        if (!owners.isEmpty()) {
+            return;
+        }
+
+        mainHandler.removeCallbacks(releaseRunnable);
+        if (releaseDelayMs <= 0) {
+            unregister();
+        } else {
+            mainHandler.postDelayed(releaseRunnable, releaseDelayMs);
+        }
+    }
+
+    /**
+     * 释放全部引用，并立即反注册事件源
+     */
+    void releaseAll() {
+        owners.clear();
+        mainHandler.removeCallbacks(releaseRunnable);
+        unregister();
+    }
+
+    /**
+     * 获取当前的引用数量
+     * @return 引用数量
+     */
+    int getRefCount() {
+        return owners.size();
+    }
+
+    /**
+     * 事件源当前是否处于注册状态
+     * @return 是否已注册
+     */
+    boolean isRegistered() {
+        return registered;
+    }
+
+    private void unregister() {
+        if (!registered) {
+            return;
+        }
+        registered = false;
+        sources.onUnregister();
+    }
+}
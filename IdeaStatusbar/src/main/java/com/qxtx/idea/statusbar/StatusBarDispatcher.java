@@ -0,0 +1,282 @@
+package com.qxtx.idea.statusbar;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.qxtx.idea.statusbar.view.IDeltaStatusBar;
+import com.qxtx.idea.statusbar.view.IStatusBar;
+import com.qxtx.idea.statusbar.view.StatusBarState;
+import com.qxtx.idea.statusbar.view.StatusBarStateAdapter;
+
+import java.util.HashMap;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 10:12
+ * <p><b>Description</b></p> 状态栏更新分发器。
+ * <pre>
+ *  · 各个事件源只负责提交最新的状态值，并标记对应的脏位，不直接操作状态栏控件
+ *  · 同一帧内的多次提交只保留最后一次的值，在下一个{@link Choreographer}帧回调中合成一个{@link StatusBarState}快照
+ *  · 快照与上一次刷新的快照比较得到变化掩码，无变化时不刷新。状态栏未实现{@link IDeltaStatusBar}时，经{@link StatusBarStateAdapter}转换
+ *  · 提交方法可以在任意线程调用，刷新总是在UI线程中完成
+ * </pre>
+ */
+final class StatusBarDispatcher implements Choreographer.FrameCallback {
+
+    /** sim信息需要刷新 */
+    static final int DIRTY_SIM = 1;
+    /** 电池信息需要刷新 */
+    static final int DIRTY_BATTERY = 1 << 1;
+    /** 飞行模式需要刷新 */
+    static final int DIRTY_AIRPLANE = 1 << 2;
+    /** 耳机状态需要刷新 */
+    static final int DIRTY_HEADSET = 1 << 3;
+    /** 网络类型需要刷新 */
+    static final int DIRTY_NETWORK = 1 << 4;
+    /** 网速需要刷新 */
+    static final int DIRTY_THROUGHPUT = 1 << 5;
+
+    private final IDeltaStatusBar statusBar;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** 在UI线程中获取，{@link Choreographer}对象与线程绑定 */
+    private Choreographer choreographer = null;
+
+    private final Object lock = new Object();
+
+    /** 当前帧内待刷新的脏位集合 */
+    private int dirtyFlags = 0;
+
+    /** 是否已经预约了下一帧的刷新 */
+    private boolean frameScheduled = false;
+
+    /** 曾经提交过的脏位集合，用于重新提交全部已知状态 */
+    private int postedFlags = 0;
+
+    /** 下一帧是否忽略变化比较，强制刷新全部已知状态 */
+    private boolean forceAll = false;
+
+    /** 上一次刷新的快照，只在UI线程中访问 */
+    private StatusBarState lastState = null;
+
+    private HashMap<Integer, StatusBarMgr.SimInfo> simInfoMap = null;
+    private int primarySubId = Integer.MIN_VALUE;
+
+    private float batteryFraction = 0f;
+    private boolean isCharging = false;
+
+    private boolean isAirplane = false;
+
+    private boolean isHeadsetExist = false;
+
+    private int netType;
+    private float signalFraction = 0f;
+    private int transferState = StatusBarMgr.TRANSFER_UNKNOWN;
+
+    private long downloadRate = -1;
+    private long uploadRate = -1;
+
+    /** 从非UI线程提交时，切换到UI线程预约帧回调 */
+    private final Runnable scheduleFrameRunnable = this::scheduleFrameOnUiThread;
+
+    StatusBarDispatcher(IStatusBar statusBar) {
+        this.statusBar = statusBar instanceof IDeltaStatusBar
+                ? (IDeltaStatusBar) statusBar
+                : new StatusBarStateAdapter(statusBar);
+    }
+
+    /**
+     * 提交sim信息
+     * @param simInfoMap   sim卡信息集，提交后不应再被修改
+     * @param primarySubId 主卡subId
+     */
+    void postSim(HashMap<Integer, StatusBarMgr.SimInfo> simInfoMap, int primarySubId) {
+        synchronized (lock) {
+            this.simInfoMap = simInfoMap;
+            this.primarySubId = primarySubId;
+            markDirtyLocked(DIRTY_SIM);
+        }
+    }
+
+    /**
+     * 提交电池信息
+     * @param fraction   电量百分比，范围为[0f,1f]
+     * @param isCharging 是否正在充电
+     */
+    void postBattery(float fraction, boolean isCharging) {
+        synchronized (lock) {
+            this.batteryFraction = fraction;
+            this.isCharging = isCharging;
+            markDirtyLocked(DIRTY_BATTERY);
+        }
+    }
+
+    /**
+     * 提交飞行模式状态
+     * @param enable 是否处于飞行模式
+     */
+    void postAirplane(boolean enable) {
+        synchronized (lock) {
+            this.isAirplane = enable;
+            markDirtyLocked(DIRTY_AIRPLANE);
+        }
+    }
+
+    /**
+     * 提交耳机状态
+     * @param exist 是否存在耳机
+     */
+    void postHeadset(boolean exist) {
+        synchronized (lock) {
+            this.isHeadsetExist = exist;
+            markDirtyLocked(DIRTY_HEADSET);
+        }
+    }
+
+    /**
+     * 提交网络状态
+     * @param type           网络类型等效值
+     * @param signalFraction 信号强度百分比，范围为[0f,1f]
+     * @param transferState  数据传输状态
+     */
+    void postNetworkType(int type, float signalFraction, int transferState) {
+        synchronized (lock) {
+            this.netType = type;
+            this.signalFraction = signalFraction;
+            this.transferState = transferState;
+            markDirtyLocked(DIRTY_NETWORK);
+        }
+    }
+
+    /**
+     * 提交数据传输状态，网络类型和信号强度保持不变
+     * @param transferState 数据传输状态
+     */
+    void postTransferState(int transferState) {
+        synchronized (lock) {
+            this.transferState = transferState;
+            markDirtyLocked(DIRTY_NETWORK);
+        }
+    }
+
+    /**
+     * 提交网速
+     * @param downloadRate 下行速率，单位为字节/秒，为-1时表示隐藏网速
+     * @param uploadRate   上行速率，单位为字节/秒，为-1时表示隐藏网速
+     */
+    void postThroughput(long downloadRate, long uploadRate) {
+        synchronized (lock) {
+            this.downloadRate = downloadRate;
+            this.uploadRate = uploadRate;
+            markDirtyLocked(DIRTY_THROUGHPUT);
+        }
+    }
+
+    /**
+     * 在下一帧重新刷新全部已知的状态。用于状态栏重新可见时，补上隐藏期间被忽略的更新
+     */
+    void replay() {
+        synchronized (lock) {
+            if (postedFlags != 0) {
+                forceAll = true;
+                markDirtyLocked(postedFlags);
+            }
+        }
+    }
+
+    /**
+     * 丢弃上一次刷新的快照，此后第一次刷新的状态都视为已改变。应在UI线程中调用
+     */
+    void reset() {
+        lastState = null;
+    }
+
+    /**
+     * 丢弃所有未刷新的更新
+     */
+    void cancel() {
+        synchronized (lock) {
+            //保留frameScheduled标记，已预约的帧回调在无脏位时将直接返回
+            dirtyFlags = 0;
+            forceAll = false;
+        }
+    }
+
+    private void markDirtyLocked(int flag) {
+        dirtyFlags |= flag;
+        postedFlags |= flag;
+        if (frameScheduled) {
+            return;
+        }
+        frameScheduled = true;
+
+        if (StatusBarMgr.isUiThread()) {
+            scheduleFrameOnUiThread();
+        } else {
+            mainHandler.post(scheduleFrameRunnable);
+        }
+    }
+
+    private void scheduleFrameOnUiThread() {
+        if (choreographer == null) {
+            choreographer = Choreographer.getInstance();
+        }
+        choreographer.postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        int posted;
+        boolean forceAll;
+        StatusBarState state;
+        synchronized (lock) {
+            int flags = dirtyFlags;
+            dirtyFlags = 0;
+            frameScheduled = false;
+            forceAll = this.forceAll;
+            this.forceAll = false;
+            if (flags == 0) {
+                return;
+            }
+
+            posted = postedFlags;
+            state = new StatusBarState(simInfoMap, primarySubId, batteryFraction, isCharging,
+                    netType, signalFraction, transferState, isHeadsetExist, isAirplane, downloadRate, uploadRate);
+        }
+
+        //只回调曾经提交过的状态，未提交过的状态仍为默认值，不应刷新到状态栏
+        int postedMask = toChangeMask(posted);
+        int changeMask = (forceAll ? IDeltaStatusBar.CHANGE_ALL : state.diff(lastState)) & postedMask;
+        lastState = state;
+        if (changeMask == 0) {
+            return;
+        }
+
+        statusBar.onStateChanged(state, changeMask);
+    }
+
+    private static int toChangeMask(int flags) {
+        int mask = 0;
+        if ((flags & DIRTY_SIM) != 0) {
+            mask |= IDeltaStatusBar.CHANGE_SIM_ANY;
+        }
+        if ((flags & DIRTY_BATTERY) != 0) {
+            mask |= IDeltaStatusBar.CHANGE_BATTERY_ANY;
+        }
+        if ((flags & DIRTY_AIRPLANE) != 0) {
+            mask |= IDeltaStatusBar.CHANGE_AIRPLANE;
+        }
+        if ((flags & DIRTY_HEADSET) != 0) {
+            mask |= IDeltaStatusBar.CHANGE_HEADSET;
+        }
+        if ((flags & DIRTY_NETWORK) != 0) {
+            mask |= IDeltaStatusBar.CHANGE_NETWORK_ANY;
+        }
+        if ((flags & DIRTY_THROUGHPUT) != 0) {
+            mask |= IDeltaStatusBar.CHANGE_THROUGHPUT;
+        }
+        return mask;
+    }
+}
@@ -8,11 +8,9 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.pm.PackageManager;
 import android.media.AudioDeviceCallback;
 import android.media.AudioDeviceInfo;
 import android.media.AudioManager;
-import android.net.ConnectivityManager;
 import android.net.Network;
 import android.net.NetworkCapabilities;
 import android.net.wifi.WifiInfo;
@@ -20,37 +18,38 @@ import android.net.wifi.WifiManager;
 import android.os.BatteryManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.support.annotation.IntDef;
 import android.support.annotation.IntRange;
 import android.support.annotation.RequiresApi;
-import android.support.annotation.UiThread;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.ActionBarOverlayLayout;
-import android.telephony.CellInfo;
-import android.telephony.CellInfoCdma;
-import android.telephony.CellInfoGsm;
-import android.telephony.CellInfoLte;
-import android.telephony.CellInfoWcdma;
-import android.telephony.CellSignalStrength;
+import android.telephony.AccessNetworkConstants;
+import android.telephony.NetworkRegistrationInfo;
 import android.telephony.PhoneStateListener;
 import android.telephony.ServiceState;
 import android.telephony.SignalStrength;
-import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
+import android.telephony.TelephonyCallback;
+import android.telephony.TelephonyDisplayInfo;
 import android.telephony.TelephonyManager;
+import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.Window;
 import android.view.WindowManager;
 import android.widget.LinearLayout;
 
-import com.qxtx.idea.statusbar.tools.network.INetworkCallback;
+import com.qxtx.idea.statusbar.tools.PermissionCache;
 import com.qxtx.idea.statusbar.tools.network.NetStateManager;
 import com.qxtx.idea.statusbar.tools.network.NetworkCallbackAdapter;
-import com.qxtx.idea.statusbar.tools.network.NetworkEventCallbackAdapter;
 import com.qxtx.idea.statusbar.view.BaseStatusBar;
 import com.qxtx.idea.statusbar.view.DefaultStatusBar;
 
@@ -61,6 +60,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * @author QXTX-WIN
@@ -87,6 +87,17 @@ import java.util.List;
  *       则{@link #setStatusBarEnable(boolean)}方法无效，状态栏将永远不会被显示。
  *   · 当需要显示状态栏时，将尽可能地隐藏系统状态栏（如果有）；当禁用状态栏时，将尝试复原系统状态栏可见性（如果需要）。
  *   · 支持以debug模式创建状态栏。此时，状态栏不会主动更新，而是需要手动实现更新。release版本中总是会禁止debug模式
+ *   · 支持在独立的工作线程中监听系统事件并推导状态，只把最终结果交给UI线程，见{@link #setEngineMode(int)}
+ *   · 支持为每个事件源设置最小更新间隔和防抖时间，以限制高频事件引起的更新，见{@link #setUpdatePolicy(int, long, long)}
+ *   · 安卓12及以上使用{@link TelephonyCallback}监听sim卡状态，回调执行于可指定的{@link Executor}，见{@link #setTelephonyExecutor(Executor)}；
+ *     较低版本使用{@link PhoneStateListener}。两者更新同一份sim信息
+ *   · wifi信号等级由rssi事件驱动并缓存，以预先计算的查找表换算信号等级，刷新时不查询系统服务
+ *   · 根据系统流量统计显示上行/下行状态，采样间隔随链路活跃程度自适应，见{@link #setTransferIndicatorEnable(boolean)}
+ *   · 可选的网速显示，并对外提供平滑后的实时速率，见{@link #setSpeedIndicatorEnable(boolean)}、{@link #getDownloadRate()}
+ *   · sim信号等级经过迟滞过滤，抑制弱信号环境下的频繁跳动，见{@link #setSimSignalFilter(long, int)}
+ *   · 安卓12及以上，对拥有运营商权限的sim卡设置与信号等级边界一致的上报门限，基带只在等级跨越边界时回调
+ *   · sim信息以打包的{@link SimRecord}记录保存，{@link ServiceState}对象只在需要时获取，快照的复制与比较只涉及long值
+ *   · 屏幕熄灭或设备进入idle模式时，暂停全部事件监听，亮屏后统一检查一次全部状态，见{@link #setSuspendWhenScreenOff(boolean)}
  * </pre>
  *
  * 2021/7/22 23:49 目前对sim卡的状态检测适用于安卓O及以上，较低版本可能会得不到正确的结果。
@@ -125,6 +136,59 @@ public class StatusBarMgr implements IStatusBarMgr {
      */
     public static final int TRANSFER_DUAL = 3;
 
+    /**
+     * 事件引擎的运行模式
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({ENGINE_MAIN_THREAD, ENGINE_WORKER_THREAD})
+    public @interface EngineMode { }
+
+    /**
+     * 所有事件监听器注册在主线程，状态推导也在主线程中完成
+     */
+    public static final int ENGINE_MAIN_THREAD = 0;
+    /**
+     * 所有事件监听器注册在独立的工作线程，状态推导（包括各种binder调用）在工作线程中完成，只把最终结果交给UI线程
+     */
+    public static final int ENGINE_WORKER_THREAD = 1;
+
+    /**
+     * 可设置更新策略的事件源
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({SOURCE_SIM_SIGNAL, SOURCE_SIM_SERVICE, SOURCE_NETWORK_TYPE, SOURCE_WIFI_RSSI,
+            SOURCE_BATTERY, SOURCE_HEADSET, SOURCE_AIRPLANE})
+    public @interface UpdateSource { }
+
+    /**
+     * sim卡信号强度
+     */
+    public static final int SOURCE_SIM_SIGNAL = 0;
+    /**
+     * sim卡服务状态
+     */
+    public static final int SOURCE_SIM_SERVICE = 1;
+    /**
+     * 网络类型
+     */
+    public static final int SOURCE_NETWORK_TYPE = 2;
+    /**
+     * wifi信号强度
+     */
+    public static final int SOURCE_WIFI_RSSI = 3;
+    /**
+     * 电池
+     */
+    public static final int SOURCE_BATTERY = 4;
+    /**
+     * 耳机
+     */
+    public static final int SOURCE_HEADSET = 5;
+    /**
+     * 飞行模式
+     */
+    public static final int SOURCE_AIRPLANE = 6;
+
     /** sim卡信号强度最大级数 */
     private static final int SIM_SIGNAL_LEVEL_MAX = 4;
 
@@ -140,6 +204,15 @@ public class StatusBarMgr implements IStatusBarMgr {
     /** sim变化的监听方案实现类 */
     private final SimEventMonitor simEventMonitor;
 
+    /** sim卡订阅信息的缓存，在订阅信息变化时失效 */
+    private final SubscriptionCache subscriptionCache;
+
+    /** 权限授予状态的缓存，在activity的onResume()时刷新 */
+    private final PermissionCache permissionCache;
+
+    /** 权限改变时，重新开始事件监听，使相关的事件源生效或失效 */
+    private final PermissionCache.OnPermissionChangedListener permissionChangedListener = this::onPermissionChanged;
+
     /** 广播接收者对象集 */
     private final List<BroadcastReceiver> broadcastReceiverList = new ArrayList<>();
 
@@ -152,6 +225,75 @@ public class StatusBarMgr implements IStatusBarMgr {
     /** 状态栏高度，单位为px */
     private int statusBarHeight;
 
+    /** 状态栏更新分发器，合并同一帧内的所有更新 */
+    private final StatusBarDispatcher dispatcher;
+
+    /** 事件源注册表，界面切换时复用已注册的事件源 */
+    private final SourceRegistry sourceRegistry;
+
+    /** 是否在熄屏期间暂停事件监听 */
+    private volatile boolean suspendWhenScreenOff = true;
+
+    /** 事件监听是否因熄屏而处于暂停状态，只在引擎线程中访问 */
+    private boolean sourcesSuspended = false;
+
+    /**
+     * 事件源是否处于注册状态，只在引擎线程中访问。{@link SourceRegistry}只能在UI线程中访问，
+     * 因此在引擎线程中执行的注册/反注册任务里同步维护此副本
+     */
+    private boolean sourcesRegistered = false;
+
+    /** 亮灭屏、idle模式的广播接收者，不受事件监听暂停的影响 */
+    private InteractiveEventReceiver interactiveReceiver = null;
+
+    /** 执行{@link TelephonyCallback}回调的线程池，为null时使用事件引擎线程 */
+    private volatile Executor telephonyExecutor = null;
+
+    /** 各事件源的更新策略 */
+    private final UpdatePolicy updatePolicy = new UpdatePolicy();
+
+    /** wifi信号等级的跟踪器，缓存最近一次事件给出的rssi */
+    private final WifiSignalTracker wifiSignalTracker = new WifiSignalTracker();
+
+    /** 数据传输状态的采样器，只在引擎线程中使用 */
+    private final TrafficSampler trafficSampler = new TrafficSampler();
+
+    /** 是否显示数据传输状态 */
+    private volatile boolean transferIndicatorEnable = true;
+
+    /** 是否显示网速 */
+    private volatile boolean speedIndicatorEnable = false;
+
+    /** 是否正在采样数据传输状态，只在引擎线程中访问 */
+    private boolean trafficSampling = false;
+
+    /** 是否向状态栏提交过网速，只在引擎线程中访问 */
+    private boolean throughputPosted = false;
+
+    /** 安卓9以下，基于小区信息的sim信号等级。后台获取到新的信号等级时，重新检查一次sim信息 */
+    private final CellInfoProvider cellInfoProvider = new CellInfoProvider((subId, level) -> postUpdateSimState(0));
+
+    /** sim信号等级的迟滞过滤器，只在引擎线程中使用 */
+    private final SignalLevelFilter simLevelFilter = new SignalLevelFilter();
+
+    /** 最近一次显示状态栏时，持有事件源引用的对象 */
+    private Object sourceOwner = null;
+
+    /** 当前使用的事件引擎模式 */
+    private @EngineMode int engineMode = ENGINE_MAIN_THREAD;
+
+    /** 期望的事件引擎模式，在下一次开始监听时生效 */
+    private @EngineMode int pendingEngineMode = ENGINE_MAIN_THREAD;
+
+    /** 工作线程模式下的事件线程 */
+    private HandlerThread engineThread = null;
+
+    /** 事件引擎线程，所有的事件监听和状态推导均在此线程中完成 */
+    private volatile Handler engineHandler = new Handler(Looper.getMainLooper());
+
+    /** 在事件引擎线程中执行任务 */
+    private final Executor engineExecutor = command -> engineHandler.post(command);
+
     /**
      * 使用默认的状态栏样式和布局，自定义状态栏高度
      *
@@ -226,6 +368,12 @@ public class StatusBarMgr implements IStatusBarMgr {
             statusBar.setVisibility(View.GONE);
         } catch (Exception ignore) { }
 
+        dispatcher = new StatusBarDispatcher(statusBar);
+
+        sourceRegistry = new SourceRegistry(new EventSources());
+
+        permissionCache = PermissionCache.getInstance(context);
+        subscriptionCache = new SubscriptionCache(context);
         simEventMonitor = new SimEventMonitor();
     }
 
@@ -246,6 +394,253 @@ public class StatusBarMgr implements IStatusBarMgr {
         return Looper.myLooper() != null && Looper.myLooper() == Looper.getMainLooper();
     }
 
+    /**
+     * 设置事件引擎模式。为避免监听器分散在不同线程中，新的模式将在下一次开始监听时生效，
+     * 因此建议在{@link #setStatusBarEnable(boolean)}之前调用
+     *
+     * @param mode 引擎模式，取值见{@link EngineMode}
+     */
+    public void setEngineMode(@EngineMode int mode) {
+        if (mode != ENGINE_MAIN_THREAD && mode != ENGINE_WORKER_THREAD) {
+            StatusBarLog.e("Error! Invalid engine mode: " + mode);
+            return;
+        }
+        pendingEngineMode = mode;
+    }
+
+    /**
+     * 获取当前的事件引擎模式
+     * @return 引擎模式，取值见{@link EngineMode}
+     */
+    public @EngineMode int getEngineMode() {
+        return engineMode;
+    }
+
+    /**
+     * 切换到期望的引擎模式（如果需要），然后在引擎线程中执行任务
+     * @param task 开始监听的任务
+     */
+    private void runOnEngineWithMode(Runnable task) {
+        if (pendingEngineMode == engineMode) {
+            runOnEngine(task);
+            return;
+        }
+
+        Handler lastHandler = engineHandler;
+        HandlerThread lastThread = engineThread;
+        if (pendingEngineMode == ENGINE_WORKER_THREAD) {
+            engineThread = new HandlerThread("IdeaStatusbar-engine", Process.THREAD_PRIORITY_BACKGROUND);
+            engineThread.start();
+            engineHandler = new Handler(engineThread.getLooper());
+        } else {
+            engineThread = null;
+            engineHandler = new Handler(Looper.getMainLooper());
+        }
+        engineMode = pendingEngineMode;
+        StatusBarLog.d("事件引擎模式切换为：" + engineMode);
+
+        //旧引擎线程中可能还有未执行的移除监听任务，等待其完成后，再到新的引擎线程中开始监听
+        lastHandler.post(() -> {
+            simEventMonitor.resetListeners();
+            engineHandler.post(task);
+        });
+        if (lastThread != null) {
+            //已投递的任务仍会被执行
+            lastThread.quitSafely();
+        }
+    }
+
+    /**
+     * 设置事件源的反注册宽限时间。最后一个显示状态栏的界面离开后，事件源将保持注册状态直到宽限时间结束，
+     * 以避免频繁的界面切换引起事件源的反复注册
+     *
+     * @param delayMs 宽限时间，单位为毫秒，默认为{@link SourceRegistry#DEF_RELEASE_DELAY_MS}。小于等于0时立即反注册
+     */
+    public void setSourceReleaseDelay(long delayMs) {
+        sourceRegistry.setReleaseDelay(delayMs);
+    }
+
+    /**
+     * 设置事件源的更新策略。高频的事件（如弱信号环境下的信号强度变化）将被合并，以限制状态栏的更新频率。
+     * <pre>
+     *  默认策略（最小间隔/防抖，单位为毫秒）：
+     *   sim信号强度 1000/200，sim服务状态 0/100，网络类型 300/100，wifi信号强度 2000/300，
+     *   电池 1000/0，耳机 0/0，飞行模式 0/0
+     * </pre>
+     *
+     * @param source        事件源，取值见{@link UpdateSource}
+     * @param minIntervalMs 同一事件源两次更新的最小间隔，单位为毫秒。为0时不限制
+     * @param debounceMs    后沿防抖时间，事件静默此时长后才执行更新，单位为毫秒。为0时不防抖
+     */
+    public void setUpdatePolicy(@UpdateSource int source, long minIntervalMs, long debounceMs) {
+        if (source < 0 || source >= UpdatePolicy.SOURCE_COUNT) {
+            StatusBarLog.e("Error! Invalid update source: " + source);
+            return;
+        }
+        updatePolicy.set(source, minIntervalMs, debounceMs);
+    }
+
+    /**
+     * 设置是否在屏幕熄灭、设备进入idle模式期间暂停事件监听（sim、网络、电池等）。
+     * 暂停期间不会产生任何状态栏更新，亮屏后统一检查一次全部状态
+     *
+     * @param enable 是否启用，默认启用
+     */
+    public void setSuspendWhenScreenOff(boolean enable) {
+        suspendWhenScreenOff = enable;
+        if (sourceRegistry.isRegistered()) {
+            runOnEngine(this::checkInteractiveState);
+        }
+    }
+
+    /**
+     * 重新检查事件监听所需的权限。权限状态被缓存，默认只在activity的onResume()时刷新，
+     * 在其它时机（如权限申请的结果回调中）改变权限后，应调用此方法。存在变化时，重新开始事件监听
+     */
+    public void refreshPermissions() {
+        permissionCache.refresh();
+    }
+
+    /**
+     * 设置是否显示数据传输状态（上行、下行）。启用时，根据系统的流量统计推导传输状态，链路空闲时降低采样频率，
+     * 无网络、状态栏隐藏或熄屏期间停止采样
+     *
+     * @param enable 是否启用，默认启用
+     */
+    public void setTransferIndicatorEnable(boolean enable) {
+        transferIndicatorEnable = enable;
+        if (sourceRegistry.isRegistered()) {
+            runOnEngine(this::resolveNetworkType);
+        }
+    }
+
+    /**
+     * 设置是否显示网速（下行、上行速率）。启用时固定每秒采样一次，速率经过指数移动平均平滑。
+     * 只有{@link DefaultStatusBar}提供了网速的显示，自定义的状态栏通过{@link com.qxtx.idea.statusbar.view.IStatusBar#onThroughputChanged(long, long)}获得网速
+     *
+     * @param enable 是否启用，默认不启用
+     */
+    public void setSpeedIndicatorEnable(boolean enable) {
+        speedIndicatorEnable = enable;
+        if (sourceRegistry.isRegistered()) {
+            runOnEngine(() -> {
+                //重新开始采样，以应用新的采样间隔
+                stopTrafficSampling();
+                resolveNetworkType();
+            });
+        }
+    }
+
+    /**
+     * 获取平滑后的下行速率。只在启用了数据传输状态或网速的显示，且存在可用网络时采样，
+     * 可用于调整下载任务的并发数等
+     *
+     * @return 下行速率，单位为字节/秒，未采样时返回-1
+     */
+    public long getDownloadRate() {
+        return trafficSampler.getDownloadRate();
+    }
+
+    /**
+     * 获取平滑后的上行速率，采样条件见{@link #getDownloadRate()}
+     *
+     * @return 上行速率，单位为字节/秒，未采样时返回-1
+     */
+    public long getUploadRate() {
+        return trafficSampler.getUploadRate();
+    }
+
+    /**
+     * 获取最近若干次采样（约8秒）内的平均下行速率，比{@link #getDownloadRate()}更稳定，采样条件见{@link #getDownloadRate()}
+     *
+     * @return 下行速率，单位为字节/秒，未采样时返回-1
+     */
+    public long getAverageDownloadRate() {
+        return trafficSampler.getAverageDownloadRate();
+    }
+
+    /**
+     * 获取最近若干次采样（约8秒）内的平均上行速率，采样条件见{@link #getDownloadRate()}
+     *
+     * @return 上行速率，单位为字节/秒，未采样时返回-1
+     */
+    public long getAverageUploadRate() {
+        return trafficSampler.getAverageUploadRate();
+    }
+
+    /**
+     * 设置sim信号等级的迟滞过滤。在信号边缘，信号等级可能在相邻两格之间频繁跳动，过滤后只有稳定的变化才会刷新到状态栏。
+     * <pre>
+     *  · 新的信号等级与当前显示的等级相差达到跳变阈值时，立即生效
+     *  · 否则需要持续保持驻留时间后才生效
+     *  · 默认驻留时间为2000毫秒，跳变阈值为2格
+     * </pre>
+     *
+     * @param dwellMs       信号等级需要保持的时间，单位为毫秒。为0时不过滤
+     * @param jumpThreshold 立即生效的最小等级差，最小为1
+     */
+    public void setSimSignalFilter(long dwellMs, int jumpThreshold) {
+        simLevelFilter.set(dwellMs, jumpThreshold);
+    }
+
+    /**
+     * 设置执行sim卡状态回调的{@link Executor}，仅在安卓12及以上有效。回调中只做简单的数据提取，sim信息的更新仍在事件引擎线程中完成。
+     * 新的设置在下一次添加sim卡监听时生效，因此建议在{@link #setStatusBarEnable(boolean)}之前调用
+     *
+     * @param executor 执行回调的{@link Executor}，为null时使用事件引擎线程
+     */
+    public void setTelephonyExecutor(Executor executor) {
+        telephonyExecutor = executor;
+    }
+
+    /**
+     * 获取当前存活的sim状态监听器数量。正常情况下，应等于可用的sim卡数量
+     * @return 存活的监听器数量
+     */
+    public int getSimListenerCount() {
+        return simEventMonitor.phoneStateRegistry.liveCount;
+    }
+
+    /**
+     * 获取累计注册过的sim状态监听器数量，可用于观察监听器的重建频率
+     * @return 累计注册数量
+     */
+    public int getSimListenerRegisterCount() {
+        return simEventMonitor.phoneStateRegistry.registerCount;
+    }
+
+    /**
+     * 获取sim卡订阅信息缓存的命中次数，用于调优
+     * @return 命中次数
+     * @see #getSubscriptionCacheMissCount()
+     */
+    public long getSubscriptionCacheHitCount() {
+        return subscriptionCache.getHitCount();
+    }
+
+    /**
+     * 获取sim卡订阅信息缓存的未命中次数，每次未命中都伴随着跨进程查询
+     * @return 未命中次数
+     * @see #getSubscriptionCacheHitCount()
+     */
+    public long getSubscriptionCacheMissCount() {
+        return subscriptionCache.getMissCount();
+    }
+
+    /** 是否处于事件引擎线程中 */
+    private boolean isEngineThread() {
+        return Looper.myLooper() == engineHandler.getLooper();
+    }
+
+    /** 在事件引擎线程中执行任务，如果当前已在引擎线程，则立即执行 */
+    private void runOnEngine(Runnable runnable) {
+        if (isEngineThread()) {
+            runnable.run();
+        } else {
+            engineHandler.post(runnable);
+        }
+    }
+
     private ViewGroup.LayoutParams generateLayoutParam() {
         ViewGroup.LayoutParams result = new ViewGroup.LayoutParams(WindowManager.LayoutParams.MATCH_PARENT, statusBarHeight);
         return result;
@@ -262,12 +657,9 @@ public class StatusBarMgr implements IStatusBarMgr {
         }
 
         int simState = TelephonyManager.SIM_STATE_UNKNOWN;
-        TelephonyManager tm = getTelephonyMgr();
-        if (tm != null) {
-            TelephonyManager subTm = tm.createForSubscriptionId(subId);
-            if (subTm != null) {
-                simState = subTm.getSimState();
-            }
+        TelephonyManager subTm = subscriptionCache.getTelephonyManager(subId);
+        if (subTm != null) {
+            simState = subTm.getSimState();
         }
         if (simState != TelephonyManager.SIM_STATE_READY) {
             return false;
@@ -289,16 +681,13 @@ public class StatusBarMgr implements IStatusBarMgr {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
             return false;
         }
-        if (appContext.checkSelfPermission(Manifest.permission.READ_PHONE_STATE) != PackageManager.PERMISSION_GRANTED) {
+        if (!permissionCache.isGranted(Manifest.permission.READ_PHONE_STATE)) {
             return false;
         }
 
-        SubscriptionManager ssm = getSubscriptionMgr();
-        if (ssm != null) {
-            SubscriptionInfo info = ssm.getActiveSubscriptionInfoForSimSlotIndex(slotId);
-            if (info != null) {
-                return isPrimarySim(info.getSubscriptionId());
-            }
+        int subId = subscriptionCache.getSubId(slotId);
+        if (SubscriptionManager.isValidSubscriptionId(subId)) {
+            return isPrimarySim(subId);
         }
         return false;
     }
@@ -319,6 +708,9 @@ public class StatusBarMgr implements IStatusBarMgr {
                     public void onActivityResumed(Activity activity) {
                         foreActWeak = new WeakReference<>(activity);
 
+                        //从设置界面或权限申请返回时，权限可能已经改变
+                        permissionCache.refresh();
+
                         //2021/10/27 13:56 被结束的activity调用onStop()/onDestroy()有时候会晚于新打开activity的onResume()，可能需要两个状态栏对象？
                         Window window = activity.getWindow();
                         WindowManager.LayoutParams lp = window.getAttributes();
@@ -393,6 +785,8 @@ public class StatusBarMgr implements IStatusBarMgr {
                         if (foreActWeak != null && foreActWeak.get() == activity) {
                             foreActWeak = null;
                         }
+                        //界面不可见，释放它持有的事件源引用
+                        sourceRegistry.release(activity);
                     }
 
                     @Override
@@ -526,6 +920,7 @@ public class StatusBarMgr implements IStatusBarMgr {
         } else {
             StatusBarLog.d("禁用状态栏模块，立即解绑状态栏（如果有）...");
             detachStatusBar(foreActWeak.get());
+            sourceRegistry.releaseAll();
         }
     }
 
@@ -551,8 +946,9 @@ public class StatusBarMgr implements IStatusBarMgr {
         statusBar.setVisibility(View.VISIBLE);
 
         if (!isDebugMode) {
-            initStatusBarIcon();
-            listenAnyChange();
+            Activity activity = foreActWeak == null ? null : foreActWeak.get();
+            sourceOwner = activity == null ? statusBar : activity;
+            sourceRegistry.acquire(sourceOwner);
         }
     }
 
@@ -566,7 +962,11 @@ public class StatusBarMgr implements IStatusBarMgr {
         }
 
         statusBar.setVisibility(View.GONE);
-        removeAnyChangeListener();
+        if (sourceOwner != null) {
+            //不立即移除监听，由注册表决定何时反注册
+            sourceRegistry.release(sourceOwner);
+            sourceOwner = null;
+        }
     }
 
     /**
@@ -601,11 +1001,31 @@ public class StatusBarMgr implements IStatusBarMgr {
         return result;
     }
 
-    private Runnable batteryChangeRunnable = null;
-    private Runnable airplaneChangeRunnable = null;
-    private Runnable headsetChangeRunnable = null;
-    private Runnable networkChangeRunnable = null;
-    private Runnable simChangeRunnable = null;
+    /** 待处理的电池广播，由{@link #batteryChangeRunnable}消费 */
+    private volatile Intent pendingBatteryIntent = null;
+    /** 待处理的网络类型，由{@link #networkChangeRunnable}消费 */
+    private volatile int pendingNetType = NetStateManager.NetType.TYPE_UNKNOWN;
+    /** 待处理的耳机状态，由{@link #headsetStateRunnable}消费 */
+    private volatile boolean pendingHeadsetExist = false;
+
+    //各事件源复用同一个任务对象，新的事件到来时，丢弃尚未执行的旧任务
+    private final Runnable batteryChangeRunnable = new SourceTask(SOURCE_BATTERY, () -> updateBattery(pendingBatteryIntent));
+    private final Runnable airplaneChangeRunnable = new SourceTask(SOURCE_AIRPLANE, this::updateAirplaneMode);
+    private final Runnable headsetChangeRunnable = this::updateHeadset;
+    private final Runnable headsetStateRunnable = new SourceTask(SOURCE_HEADSET, this::publishHeadset);
+    private final Runnable networkChangeRunnable = new SourceTask(SOURCE_NETWORK_TYPE, () -> updateNetworkType(pendingNetType));
+    private final Runnable wifiRssiRunnable = new SourceTask(SOURCE_WIFI_RSSI, () -> updateNetworkType(NetStateManager.NetType.TYPE_WIFI));
+    private final Runnable simChangeRunnable = this::updateSimInfo;
+    private final Runnable simSignalRunnable = new SourceTask(SOURCE_SIM_SIGNAL, this::publishSimInfo);
+
+    /** 采样一次数据传输状态 */
+    private final Runnable trafficSampleRunnable = this::sampleTraffic;
+
+    /** 检查驻留中的sim信号等级是否到期 */
+    private final Runnable simLevelDwellRunnable = this::checkSimLevelDwell;
+    private final Runnable simServiceRunnable = new SourceTask(SOURCE_SIM_SERVICE, this::publishSimInfo);
+    /** sim变化后，重新获取一次网络类型 */
+    private final Runnable networkResolveRunnable = new SourceTask(SOURCE_NETWORK_TYPE, this::resolveNetworkType);
 
     /**
      * 一次完整的状态栏图标初始化操作
@@ -614,7 +1034,7 @@ public class StatusBarMgr implements IStatusBarMgr {
     protected void initStatusBarIcon() {
         updateAirplaneMode();
 
-        Intent batteryIntent = appContext.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        Intent batteryIntent = appContext.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED), null, engineHandler);
         updateBattery(batteryIntent);
 
         updateHeadset();
@@ -627,9 +1047,8 @@ public class StatusBarMgr implements IStatusBarMgr {
     /**
      * 无论如何，检查一次全部sim的状态
      */
-    @UiThread
     private void updateSimInfo() {
-        if (!isUiThread()) {
+        if (!isEngineThread()) {
             return;
         }
         //2021/7/29 21:01 需要获取ServiceState对象，以获得当前sim卡的dataRegister状态，最低要求安卓O
@@ -637,7 +1056,7 @@ public class StatusBarMgr implements IStatusBarMgr {
             StatusBarLog.e("系统版本过低，无法获得sim卡完整信息");
             return;
         }
-        if (appContext.checkSelfPermission(Manifest.permission.READ_PHONE_STATE) != PackageManager.PERMISSION_GRANTED) {
+        if (!permissionCache.isGranted(Manifest.permission.READ_PHONE_STATE)) {
             StatusBarLog.e("缺少读取手机状态权限！无法获得sim卡信息");
             return;
         }
@@ -649,91 +1068,87 @@ public class StatusBarMgr implements IStatusBarMgr {
             return;
         }
 
-        HashMap<Integer, SimInfo> simInfoMap = simEventMonitor.simInfoMap;
-        int slotCount = tm.getPhoneCount();
-        for (int i = 0; i < slotCount; i++) {
-            SubscriptionInfo info = ssm.getActiveSubscriptionInfoForSimSlotIndex(i);
-            if (info == null) {
+        simEventMonitor.init();
+
+        SimStore simStore = simEventMonitor.simStore;
+        int slotCount = Math.max(tm.getPhoneCount(), subscriptionCache.getSlotCount());
+        for (int slotId = 0; slotId < slotCount; slotId++) {
+            int subId = subscriptionCache.getSubId(slotId);
+            if (!SubscriptionManager.isValidSubscriptionId(subId)) {
                 //认为是空卡槽，移除记录
-                simInfoMap.remove(i);
+                simStore.remove(slotId);
                 continue;
             }
-            int subId = info.getSubscriptionId();
-            int slotId = info.getSimSlotIndex();
-            TelephonyManager subTm = tm.createForSubscriptionId(subId);
+            TelephonyManager subTm = subscriptionCache.getTelephonyManager(subId);
             if (subTm == null || !SimInfo.isSimReady(subTm.getSimState())) {
-                simInfoMap.remove(slotId);
+                simStore.remove(slotId);
                 continue;
             }
 
-            int level = simEventMonitor.getSimSignalLevel(subTm);
+            int level = simEventMonitor.getSimSignalLevel(subId, subTm);
             //消除一些厂商，使用[0, 4]之外的等级数值
             level = Math.min(level, SIM_SIGNAL_LEVEL_MAX);
 
             int simState = subTm.getSimState();
             ServiceState serviceState = subTm.getServiceState();
-            SimInfo simInfo = simInfoMap.get(slotId);
-            if (simInfo == null) {
-                simInfo = new SimInfo(slotId, subId, simState, serviceState, level);
-                simInfoMap.put(slotId, simInfo);
-            } else {
-                simInfo.subId = subId;
-                simInfo.simState = simState;
-                simInfo.serviceState = serviceState;
-                simInfo.signalLevel = level;
-            }
+            simStore.put(slotId, subId, simState, serviceState, level);
 
             StatusBarLog.d(TAG + ": " + (isPrimarySim(subId) ? "主卡" : "副卡") + ", 默认流量卡：" + SubscriptionManager.getDefaultDataSubscriptionId()
-                    + ", 信号等级：" + level + ", 信息：" + simInfo.toString());
+                    + ", 信号等级：" + level + ", 信息：" + simStore.get(slotId));
         }
 
-        statusBar.onSimChanged(getSimMapClone(), simEventMonitor.primarySubId);
+        publishSimInfo();
         StatusBarLog.i("更新sim信号， 同时检查网络类型");
     }
 
     private void postUpdateSimState(long delayMs) {
-        removeStatusBarUpdate(simChangeRunnable);
-        simChangeRunnable = this::updateSimInfo;
-        updateStatusBar(simChangeRunnable, delayMs);
+        postUpdate(simChangeRunnable, delayMs);
+    }
+
+    /** 提交一份当前的sim信息到分发器。sim信息未改变时，提交的是同一份快照 */
+    private void publishSimInfo() {
+        dispatcher.postSim(simEventMonitor.simStore.snapshot(), simEventMonitor.primarySubId);
     }
 
     /** 检查一次耳机状态 */
-    @UiThread
     private void updateHeadset() {
-        if (!isUiThread()) {
+        if (!isEngineThread()) {
             return;
         }
-        statusBar.onHeadSetChanged(isHeadsetExist(appContext));
+        dispatcher.postHeadset(isHeadsetExist(appContext));
+    }
+
+    /**
+     * 提交一次已知的耳机状态
+     * @param exist 是否存在耳机
+     */
+    private void postUpdateHeadset(boolean exist) {
+        pendingHeadsetExist = exist;
+        postUpdate(SOURCE_HEADSET, headsetStateRunnable);
     }
 
-    private void postUpdateHeadset(long delayMs) {
-        removeStatusBarUpdate(headsetChangeRunnable);
-        headsetChangeRunnable = this::updateHeadset;
-        updateStatusBar(headsetChangeRunnable, delayMs);
+    private void publishHeadset() {
+        dispatcher.postHeadset(pendingHeadsetExist);
     }
 
     /** 检查一次飞行模式状态 */
-    @UiThread
     private void updateAirplaneMode() {
-        if (!isUiThread()) {
+        if (!isEngineThread()) {
             return;
         }
 
         boolean isAirplane = StatusBarMgr.isAirplaneMode(appContext);
         StatusBarLog.d(TAG + ": " + "是否处于飞行模式：" + isAirplane);
-        statusBar.onAirplaneChanged(isAirplane);
+        dispatcher.postAirplane(isAirplane);
     }
 
-    private void postUpdateAirplaneMode(long delayMs) {
-        removeStatusBarUpdate(airplaneChangeRunnable);
-        airplaneChangeRunnable = this::updateAirplaneMode;
-        updateStatusBar(airplaneChangeRunnable, delayMs);
+    private void postUpdateAirplaneMode() {
+        postUpdate(SOURCE_AIRPLANE, airplaneChangeRunnable);
     }
 
     /** 检查一次电池信息 */
-    @UiThread
     private void updateBattery(Intent intent) {
-        if (!isUiThread()) {
+        if (!isEngineThread()) {
             return;
         }
 
@@ -749,22 +1164,20 @@ public class StatusBarMgr implements IStatusBarMgr {
         boolean isCharging = (state == BatteryManager.BATTERY_STATUS_CHARGING
                 || state == BatteryManager.BATTERY_STATUS_FULL)
                 && pluggedState != 0;
-        statusBar.onBatteryChanged(fraction, isCharging);
+        dispatcher.postBattery(fraction, isCharging);
     }
 
-    private void postUpdateBattery(Intent intent, long delayMs) {
-        removeStatusBarUpdate(batteryChangeRunnable);
-        batteryChangeRunnable = () -> updateBattery(intent);
-        updateStatusBar(batteryChangeRunnable, delayMs);
+    private void postUpdateBattery(Intent intent) {
+        pendingBatteryIntent = intent;
+        postUpdate(SOURCE_BATTERY, batteryChangeRunnable);
     }
 
     /**
      * 检查网络状态
      * @param netType 当前网络类型
      */
-    @UiThread
     private void updateNetworkType(@NetStateManager.NetType int netType) {
-        if (!isUiThread()) {
+        if (!isEngineThread()) {
             return;
         }
 
@@ -772,20 +1185,26 @@ public class StatusBarMgr implements IStatusBarMgr {
 
         switch (netType) {
             case NetStateManager.NetType.TYPE_WIFI:
-                WifiManager wm = (WifiManager) getSysMgr(Context.WIFI_SERVICE);
-                if (wm != null) {
-                    WifiInfo info = wm.getConnectionInfo();
-                    int rssi = info.getRssi();
-                    int maxLevel = statusBar.getWifiMaxLevel();
-                    int level = WifiManager.calculateSignalLevel(rssi, maxLevel + 1);
-                    signalFraction = (float) level / maxLevel;
-                    StatusBarLog.i("wifi rssi=" + rssi + ", level(max:" + maxLevel + ")=" + level);
+                if (!wifiSignalTracker.hasRssi()) {
+                    //尚未收到任何rssi事件，查询一次作为初始值，之后由事件驱动
+                    WifiManager wm = (WifiManager) getSysMgr(Context.WIFI_SERVICE);
+                    WifiInfo info = wm == null ? null : wm.getConnectionInfo();
+                    if (info != null) {
+                        wifiSignalTracker.setRssi(info.getRssi());
+                    }
                 }
+                int maxLevel = statusBar.getWifiMaxLevel();
+                int level = wifiSignalTracker.getLevel(maxLevel);
+                signalFraction = maxLevel > 0 ? (float) level / maxLevel : 1f;
+                StatusBarLog.i("wifi rssi=" + wifiSignalTracker.getRssi() + ", level(max:" + maxLevel + ")=" + level);
                 break;
             case NetStateManager.NetType.TYPE_2G:
             case NetStateManager.NetType.TYPE_3G:
             case NetStateManager.NetType.TYPE_4G:
             case NetStateManager.NetType.TYPE_5G:
+            case NetStateManager.NetType.TYPE_ETHERNET:
+            case NetStateManager.NetType.TYPE_VPN:
+            case NetStateManager.NetType.TYPE_BLUETOOTH:
                 break;
             case NetStateManager.NetType.TYPE_NONE:
                 signalFraction = 0f;
@@ -797,14 +1216,88 @@ public class StatusBarMgr implements IStatusBarMgr {
                 break;
         }
 
-        StatusBarLog.i(String.format("网络类型：type=%s, fraction=%s, transferStat=%s", netType, signalFraction, TRANSFER_UNKNOWN));
-        statusBar.onNetworkTypeChanged(netType, signalFraction, TRANSFER_UNKNOWN);
+        if (netType != NetStateManager.NetType.TYPE_WIFI) {
+            wifiSignalTracker.reset();
+        }
+
+        //无网络时没有数据传输，停止采样
+        if (netType == NetStateManager.NetType.TYPE_NONE || netType == NetStateManager.NetType.TYPE_UNKNOWN) {
+            stopTrafficSampling();
+        } else {
+            startTrafficSampling();
+        }
+
+        int transferState = transferIndicatorEnable ? trafficSampler.getState() : TRANSFER_UNKNOWN;
+        StatusBarLog.i(String.format("网络类型：type=%s, fraction=%s, transferStat=%s", netType, signalFraction, transferState));
+        dispatcher.postNetworkType(netType, signalFraction, transferState);
+    }
+
+    /**
+     * 开始采样数据传输状态。只应在引擎线程中调用
+     */
+    private void startTrafficSampling() {
+        if (!transferIndicatorEnable && !speedIndicatorEnable) {
+            stopTrafficSampling();
+            return;
+        }
+        if (trafficSampling || !sourcesRegistered || sourcesSuspended) {
+            return;
+        }
+        trafficSampling = true;
+        trafficSampler.reset();
+        trafficSampler.setFixedInterval(speedIndicatorEnable);
+        engineHandler.post(trafficSampleRunnable);
+    }
+
+    /**
+     * 停止采样数据传输状态，并清除已显示的传输状态和网速。只应在引擎线程中调用
+     */
+    private void stopTrafficSampling() {
+        if (!trafficSampling) {
+            return;
+        }
+        trafficSampling = false;
+        engineHandler.removeCallbacks(trafficSampleRunnable);
+        if (trafficSampler.getState() != TRANSFER_UNKNOWN) {
+            dispatcher.postTransferState(TRANSFER_UNKNOWN);
+        }
+        trafficSampler.reset();
+        if (throughputPosted) {
+            throughputPosted = false;
+            dispatcher.postThroughput(-1, -1);
+        }
+    }
+
+    private void sampleTraffic() {
+        if (!trafficSampling) {
+            return;
+        }
+        if (trafficSampler.sample() && transferIndicatorEnable) {
+            dispatcher.postTransferState(trafficSampler.getState());
+        }
+        if (speedIndicatorEnable && trafficSampler.getDownloadRate() >= 0) {
+            throughputPosted = true;
+            dispatcher.postThroughput(trafficSampler.getDownloadRate(), trafficSampler.getUploadRate());
+        }
+        engineHandler.postDelayed(trafficSampleRunnable, trafficSampler.getInterval());
+    }
+
+    private void postUpdateNetworkType(@NetStateManager.NetType int netType) {
+        if (netType == NetStateManager.NetType.TYPE_WIFI && pendingNetType == NetStateManager.NetType.TYPE_WIFI) {
+            //仍是wifi网络，只有信号强度可能改变
+            postUpdate(SOURCE_WIFI_RSSI, wifiRssiRunnable);
+            return;
+        }
+        pendingNetType = netType;
+        //网络类型的更新会重新读取wifi信号强度
+        engineHandler.removeCallbacks(wifiRssiRunnable);
+        updatePolicy.cancel(SOURCE_WIFI_RSSI);
+        postUpdate(SOURCE_NETWORK_TYPE, networkChangeRunnable);
     }
 
-    private void postUpdateNetworkType(@NetStateManager.NetType int netType, int delayMs) {
-        removeStatusBarUpdate(networkChangeRunnable);
-        networkChangeRunnable = () -> updateNetworkType(netType);
-        updateStatusBar(networkChangeRunnable, delayMs);
+    /** 重新获取一次网络类型 */
+    private void resolveNetworkType() {
+        updateNetworkType(NetStateManager.getCurNetworkType(appContext));
     }
 
     /**
@@ -878,7 +1371,16 @@ public class StatusBarMgr implements IStatusBarMgr {
      * 移除所有监听。对应{@link #listenAnyChange()}
      */
     protected void removeAnyChangeListener() {
+        stopTrafficSampling();
+        wifiSignalTracker.reset();
+        cellInfoProvider.release();
+
         if (simEventMonitor != null) {
+            simEventMonitor.phoneStateRegistry.clear();
+            simEventMonitor.initialized = false;
+            //停止监听后无法得知订阅信息的变化
+            subscriptionCache.invalidate();
+
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1) {
                 SubscriptionManager.OnSubscriptionsChangedListener listener = simEventMonitor.getSubscriptionChangeListener();
                 if (listener != null) {
@@ -904,11 +1406,7 @@ public class StatusBarMgr implements IStatusBarMgr {
         }
 
         if (networkEventCallback != null) {
-            NetStateManager.getInstance(appContext).removeNetworkCallback(networkEventCallback);
-        }
-
-        if (defNetActiveCallback != null) {
-            NetStateManager.getInstance(appContext).removeDefNetworkActiveCallback(defNetActiveCallback);
+            NetStateManager.getInstance(appContext).removeDefNetworkCallback(networkEventCallback);
         }
 
         for (int i = 0; i < broadcastReceiverList.size(); i++) {
@@ -929,15 +1427,20 @@ public class StatusBarMgr implements IStatusBarMgr {
      * sim卡信号的变化：实时变化
      */
     protected void listenSimChange() {
-        //默认流量卡的变更，只要网络变化，就检查一下默认流量卡
-        NetStateManager.getInstance(appContext).addNetworkCallback(simEventMonitor.getDataSimChangedCallback());
+        simEventMonitor.init();
 
         //物理拔插卡的变更
         BroadcastReceiver simEventReceiver = simEventMonitor.getSimEventBroadcastReceiver();
         IntentFilter simFilter = new IntentFilter(SimEventMonitor.ACTION_SIM_STATE_CHANGED);
-        appContext.registerReceiver(simEventReceiver, simFilter);
+        appContext.registerReceiver(simEventReceiver, simFilter, null, engineHandler);
         broadcastReceiverList.add(simEventReceiver);
 
+        //默认流量卡的变更
+        BroadcastReceiver dataSimEventReceiver = simEventMonitor.getDataSimEventBroadcastReceiver();
+        IntentFilter dataSimFilter = new IntentFilter(SimEventMonitor.ACTION_DEF_DATA_SUBSCRIPTION_CHANGED);
+        appContext.registerReceiver(dataSimEventReceiver, dataSimFilter, null, engineHandler);
+        broadcastReceiverList.add(dataSimEventReceiver);
+
         //sim卡启停、信号强度的检测
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1) {
             SubscriptionManager ssm = getSubscriptionMgr();
@@ -955,7 +1458,7 @@ public class StatusBarMgr implements IStatusBarMgr {
     protected void listenBatteryChange() {
         BatteryEventReceiver batteryEventReceiver = new BatteryEventReceiver();
         IntentFilter batteryEventFilter = new IntentFilter(BatteryEventReceiver.ACTION);
-        appContext.registerReceiver(batteryEventReceiver, batteryEventFilter);
+        appContext.registerReceiver(batteryEventReceiver, batteryEventFilter, null, engineHandler);
         broadcastReceiverList.add(batteryEventReceiver);
     }
 
@@ -965,7 +1468,7 @@ public class StatusBarMgr implements IStatusBarMgr {
     protected void listenAirplaneModeChange() {
         AirplaneEventReceiver airplaneEventReceiver = new AirplaneEventReceiver();
         IntentFilter airplaneEventFilter = new IntentFilter(AirplaneEventReceiver.ACTION);
-        appContext.registerReceiver(airplaneEventReceiver, airplaneEventFilter);
+        appContext.registerReceiver(airplaneEventReceiver, airplaneEventFilter, null, engineHandler);
         broadcastReceiverList.add(airplaneEventReceiver);
     }
 
@@ -984,7 +1487,7 @@ public class StatusBarMgr implements IStatusBarMgr {
                         for (AudioDeviceInfo info : addedDevices) {
                             if (isHeadsetDeviceType(info.getType())) {
                                 StatusBarLog.d(TAG + ": " + "音频类型设备被添加：" + info.getType());
-                                updateStatusBar(() -> statusBar.onHeadSetChanged(true));
+                                postUpdateHeadset(true);
                                 break;
                             }
                         }
@@ -1013,54 +1516,90 @@ public class StatusBarMgr implements IStatusBarMgr {
                             }
                             final boolean enable = headsetExist;
                             StatusBarLog.d(TAG + ": " + "耳机图标更新：存在耳机？" + enable);
-                            updateStatusBar(() -> statusBar.onHeadSetChanged(enable));
+                            postUpdateHeadset(enable);
                         }
                     }
                 };
             }
-            am.registerAudioDeviceCallback(headsetCallback, null);
+            am.registerAudioDeviceCallback(headsetCallback, engineHandler);
         } else {
             //并不好用，可能不能同时判断蓝牙+有线的情况？？
             IntentFilter headsetFilter = new IntentFilter(HeadsetEventReceiver.ACTION_HEADSET_PLUG);
             headsetFilter.addAction(HeadsetEventReceiver.ACTION_BLUETOOTH_HEADSET);
             headsetFilter.addAction(HeadsetEventReceiver.ACTION_AUDIO_BECOMING_NOISY);
             HeadsetEventReceiver headsetEventReceiver = new HeadsetEventReceiver();
-            appContext.registerReceiver(headsetEventReceiver, headsetFilter);
+            appContext.registerReceiver(headsetEventReceiver, headsetFilter, null, engineHandler);
             broadcastReceiverList.add(headsetEventReceiver);
         }
     }
 
     private NetworkEventCallback networkEventCallback = null;
 
-    private ConnectivityManager.OnNetworkActiveListener defNetActiveCallback = null;
-
     /**
-     * 监听网络变化
+     * 监听网络变化。只订阅系统默认网络，每次网络变化只产生一次回调，由{@link NetworkEventCallback}在内部分发。
+     *  回调与其它监听器一样在引擎线程中执行
      */
     protected void listenNetworkChange() {
         if (networkEventCallback == null) {
             networkEventCallback = new NetworkEventCallback();
         }
-        NetStateManager.getInstance(appContext).addNetworkCallback(networkEventCallback);
+        NetStateManager.getInstance(appContext).addDefNetworkCallback(networkEventCallback, engineExecutor);
 
-        //laiyx 2021/12/17 16:27 增强对移动网络（系统默认网络）可用性的判断
-        if (defNetActiveCallback == null) {
-            defNetActiveCallback = () -> {
-                StatusBarLog.d("发现网络可用");
-                int netType = NetStateManager.getCurNetworkType(appContext);
-                if (netType != NetStateManager.NetType.TYPE_NONE) {
-                    postUpdateNetworkType(netType, 0);
-                }
-            };
+        //安卓10及以上，wifi信号强度由网络能力给出，见NetworkEventCallback
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            WifiRssiEventReceiver wifiRssiEventReceiver = new WifiRssiEventReceiver();
+            appContext.registerReceiver(wifiRssiEventReceiver, new IntentFilter(WifiRssiEventReceiver.ACTION), null, engineHandler);
+            broadcastReceiverList.add(wifiRssiEventReceiver);
         }
-        NetStateManager.getInstance(appContext).addDefNetworkActiveCallback(defNetActiveCallback);
     }
 
-    /** 移除状态栏的更新任务（可能目标任务已经过时，需要丢弃它） */
-    private void removeStatusBarUpdate(Runnable runnable) {
-        if (runnable != null) {
-            statusBar.removeCallbacks(runnable);
-        }
+    /**
+     * 投递一个状态推导任务。如果同一任务尚未执行，则丢弃旧的任务（可能目标任务已经过时）
+     * @param runnable 复用的任务对象
+     * @param delayMs  延迟执行任务的时长，单位为毫秒
+     */
+    private void postUpdate(Runnable runnable, long delayMs) {
+        engineHandler.removeCallbacks(runnable);
+        engineHandler.postDelayed(runnable, Math.max(0, delayMs));
+    }
+
+    /**
+     * 按照事件源的更新策略投递一个状态推导任务，任务应为对应事件源的{@link SourceTask}
+     * @param source   事件源
+     * @param runnable 复用的任务对象
+     */
+    private void postUpdate(@UpdateSource int source, Runnable runnable) {
+        long at = updatePolicy.schedule(source, SystemClock.uptimeMillis());
+        engineHandler.removeCallbacks(runnable);
+        engineHandler.postAtTime(runnable, at);
+    }
+
+    /** 使驻留时间到期的sim信号等级生效 */
+    private void checkSimLevelDwell() {
+        simEventMonitor.checkSignalLevelDwell();
+    }
+
+    /** 丢弃全部尚未执行的状态推导任务，以及尚未刷新到状态栏的更新。只应在引擎线程中，监听器移除之后调用 */
+    private void cancelPendingUpdates() {
+        Handler handler = engineHandler;
+        handler.removeCallbacks(batteryChangeRunnable);
+        handler.removeCallbacks(airplaneChangeRunnable);
+        handler.removeCallbacks(headsetChangeRunnable);
+        handler.removeCallbacks(networkChangeRunnable);
+        handler.removeCallbacks(simChangeRunnable);
+        handler.removeCallbacks(headsetStateRunnable);
+        handler.removeCallbacks(wifiRssiRunnable);
+        handler.removeCallbacks(simSignalRunnable);
+        handler.removeCallbacks(simServiceRunnable);
+        handler.removeCallbacks(networkResolveRunnable);
+        updatePolicy.reset();
+        dispatcher.cancel();
+    }
+
+    /** 丢弃sim信号等级的驻留状态。过滤器只能在引擎线程中访问，应在监听器移除之后调用 */
+    private void resetSimLevelFilter() {
+        engineHandler.removeCallbacks(simLevelDwellRunnable);
+        simLevelFilter.reset();
     }
 
     /**
@@ -1083,18 +1622,6 @@ public class StatusBarMgr implements IStatusBarMgr {
         statusBar.postDelayed(runnable, Math.max(0, delayMs));
     }
 
-    /** 克隆一份sim信息，用于提供到外部，且防止外部篡改数据 */
-    private HashMap<Integer, SimInfo> getSimMapClone() {
-        HashMap<Integer, SimInfo> result = new HashMap<>();
-        for (Integer key : simEventMonitor.simInfoMap.keySet()) {
-            SimInfo value = simEventMonitor.simInfoMap.get(key);
-            if (key != null && value != null) {
-                result.put(key, value.deepCopy());
-            }
-        }
-        return result;
-    }
-
     private TelephonyManager getTelephonyMgr() {
         TelephonyManager result = null;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1) {
@@ -1115,57 +1642,208 @@ public class StatusBarMgr implements IStatusBarMgr {
         return result;
     }
 
-    private final class NetworkEventCallback extends NetworkCallbackAdapter {
+    /**
+     * 受更新策略约束的状态推导任务，执行时记录事件源的更新时间
+     */
+    private final class SourceTask implements Runnable {
 
-        @Override
-        public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
-            StatusBarLog.i(TAG + ": " + "网络能力改变：" + network.toString() + ", cap=" + networkCapabilities.toString()
-                    + ", cur network=" + NetStateManager.getCurNetworkName(appContext, network));
+        private final @UpdateSource int source;
+        private final Runnable action;
 
-            int netType = NetStateManager.NetType.TYPE_UNKNOWN;
-            boolean hasWifi = networkCapabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI);
-            boolean hasCellular = networkCapabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR);
-            if (hasWifi) {
-                netType = NetStateManager.NetType.TYPE_WIFI;
-            } else {
-                if (hasCellular) {
-                    netType = NetStateManager.getCurNetworkType(appContext, network);
-                }
-            }
-            postUpdateNetworkType(netType, 0);
+        private SourceTask(@UpdateSource int source, Runnable action) {
+            this.source = source;
+            this.action = action;
         }
 
         @Override
-        public void onLost(Network network) {
-            StatusBarLog.i(TAG + ": " + "某个网络丢失");
-            ConnectivityManager cm = (ConnectivityManager) getSysMgr(Context.CONNECTIVITY_SERVICE);
-            if (cm == null) {
-                return;
-            }
+        public void run() {
+            updatePolicy.onRun(source, SystemClock.uptimeMillis());
+            action.run();
+        }
+    }
 
-            if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.M) {
-                return;
+    /**
+     * 事件源的注册/反注册实现
+     * @see SourceRegistry
+     */
+    private final class EventSources implements SourceRegistry.Sources {
+
+        @Override
+        public void onRegister() {
+            StatusBarLog.d("注册状态栏事件源");
+            //反注册期间状态栏可能被隐藏过，重新注册后的第一次刷新不与旧状态比较
+            dispatcher.reset();
+            runOnEngineWithMode(() -> {
+                sourcesRegistered = true;
+                sourcesSuspended = false;
+                initStatusBarIcon();
+                listenAnyChange();
+                listenInteractiveChange();
+            });
+            permissionCache.addOnPermissionChangedListener(permissionChangedListener);
+        }
+
+        @Override
+        public void onUnregister() {
+            StatusBarLog.d("反注册状态栏事件源");
+            permissionCache.removeOnPermissionChangedListener(permissionChangedListener);
+            runOnEngine(() -> {
+                sourcesRegistered = false;
+                removeInteractiveListener();
+                if (!sourcesSuspended) {
+                    removeAnyChangeListener();
+                }
+                sourcesSuspended = false;
+                resetSimLevelFilter();
+                //在最后一个监听器回调之后取消，避免已在队列中的任务在取消后再次投递更新
+                cancelPendingUpdates();
+            });
+        }
+
+        @Override
+        public void onReuse() {
+            //状态栏隐藏期间的更新不会被绘制，重新提交一次最新的状态
+            dispatcher.replay();
+        }
+    }
+
+    /**
+     * 状态栏唯一的网络订阅，监听系统默认网络。一次网络变化只回调一次，在内部分发到默认流量卡的兜底检查和网络类型的推导
+     */
+    private final class NetworkEventCallback extends NetworkCallbackAdapter {
+
+        @Override
+        public void onAvailable(Network network) {
+            //默认网络切换时，兜底检查一下默认流量卡
+            if (simEventMonitor != null && simEventMonitor.initialized) {
+                simEventMonitor.checkDefaultDataSim();
             }
+        }
 
-            boolean isNetAvailable = NetStateManager.getInstance(appContext).isNetworkAvailable();
-            if (!isNetAvailable) {
-                StatusBarLog.i("已经没有网络");
-                postUpdateNetworkType(NetStateManager.NetType.TYPE_NONE, 0);
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
+            StatusBarLog.i(TAG + ": " + "网络能力改变：" + network.toString() + ", cap=" + networkCapabilities.toString()
+                    + ", cur network=" + NetStateManager.getCurNetworkName(appContext, network));
 
-                //laiyx 2021/12/17 16:23 弥补性的检查
-                updateStatusBar(() -> {
-                    int netType = NetStateManager.getCurNetworkType(appContext);
-                    if (netType != NetStateManager.NetType.TYPE_NONE) {
-                        updateNetworkType(netType);
+            if (simEventMonitor != null && simEventMonitor.initialized) {
+                simEventMonitor.checkDefaultDataSimFallback(networkCapabilities);
+            }
+
+            int netType = NetStateManager.NetType.TYPE_UNKNOWN;
+            boolean hasWifi = networkCapabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI);
+            if (hasWifi) {
+                netType = NetStateManager.NetType.TYPE_WIFI;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                    int strength = networkCapabilities.getSignalStrength();
+                    boolean rssiChanged = strength != NetworkCapabilities.SIGNAL_STRENGTH_UNSPECIFIED
+                            && wifiSignalTracker.setRssi(strength);
+                    if (!rssiChanged && pendingNetType == NetStateManager.NetType.TYPE_WIFI) {
+                        //仍是wifi网络，且信号强度未改变，其它能力的变化不影响状态栏
+                        return;
                     }
-                }, 500);
+                }
+            } else {
+                //移动网络、以太网、VPN、蓝牙共享网络，由网络信息表解析
+                netType = NetStateManager.getCurNetworkType(appContext, network);
+            }
+            postUpdateNetworkType(netType);
+        }
+
+        @Override
+        public void onLost(Network network) {
+            StatusBarLog.i(TAG + ": " + "默认网络丢失");
+            //存在其它可用网络时，系统会立即回调新的默认网络，这里不需要补偿性的检查
+            if (!NetStateManager.getInstance(appContext).isNetworkAvailable()) {
+                StatusBarLog.i("已经没有网络");
+                postUpdateNetworkType(NetStateManager.NetType.TYPE_NONE);
             }
         }
 
         @Override
         public void onUnavailable() {
             StatusBarLog.i(TAG + ": " + "网络变得不可用");
-            postUpdateNetworkType(NetStateManager.NetType.TYPE_NONE, 0);
+            postUpdateNetworkType(NetStateManager.NetType.TYPE_NONE);
+        }
+    }
+
+    /**
+     * 监听亮灭屏和idle模式的变化。注册后即检查一次当前状态
+     */
+    private void listenInteractiveChange() {
+        if (interactiveReceiver == null) {
+            interactiveReceiver = new InteractiveEventReceiver();
+        }
+        IntentFilter filter = new IntentFilter(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED);
+        appContext.registerReceiver(interactiveReceiver, filter, null, engineHandler);
+
+        checkInteractiveState();
+    }
+
+    /** 移除亮灭屏和idle模式的监听。对应{@link #listenInteractiveChange()} */
+    private void removeInteractiveListener() {
+        if (interactiveReceiver != null) {
+            try {
+                appContext.unregisterReceiver(interactiveReceiver);
+            } catch (Exception ignore) { }
+        }
+    }
+
+    /**
+     * 根据当前的亮屏和idle状态，暂停或恢复事件监听
+     */
+    private void checkInteractiveState() {
+        if (!isEngineThread()) {
+            return;
+        }
+        PowerManager pm = (PowerManager) getSysMgr(Context.POWER_SERVICE);
+        if (pm == null) {
+            return;
+        }
+        boolean inactive = suspendWhenScreenOff && (!pm.isInteractive() || pm.isDeviceIdleMode());
+        if (inactive == sourcesSuspended) {
+            return;
+        }
+        sourcesSuspended = inactive;
+
+        if (inactive) {
+            StatusBarLog.d("熄屏或设备空闲，暂停事件监听");
+            removeAnyChangeListener();
+            resetSimLevelFilter();
+            cancelPendingUpdates();
+        } else {
+            //暂停期间错过的事件，通过一次完整的检查补上
+            StatusBarLog.d("亮屏，恢复事件监听并检查一次全部状态");
+            initStatusBarIcon();
+            listenAnyChange();
+        }
+    }
+
+    /**
+     * 权限改变后，重新开始全部事件监听，并检查一次全部状态。暂停期间不处理，恢复时会重新开始监听
+     */
+    private void onPermissionChanged() {
+        runOnEngine(() -> {
+            if (!sourcesRegistered || sourcesSuspended) {
+                return;
+            }
+            StatusBarLog.d("权限改变，重新开始事件监听");
+            removeAnyChangeListener();
+            initStatusBarIcon();
+            listenAnyChange();
+        });
+    }
+
+    private final class InteractiveEventReceiver extends BroadcastReceiver {
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (intent == null) {
+                return;
+            }
+            StatusBarLog.d(TAG + ": " + "交互状态改变：" + intent.getAction());
+            checkInteractiveState();
         }
     }
 
@@ -1184,7 +1862,29 @@ public class StatusBarMgr implements IStatusBarMgr {
 
             StatusBarLog.d(TAG + ": " + "飞行模式改变");
 
-            postUpdateAirplaneMode(0);
+            postUpdateAirplaneMode();
+        }
+    }
+
+    /**
+     * wifi信号强度变化的广播，只在安卓10以下使用
+     */
+    private final class WifiRssiEventReceiver extends BroadcastReceiver {
+
+        private static final String ACTION = WifiManager.RSSI_CHANGED_ACTION;
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (intent == null || !ACTION.equals(intent.getAction())) {
+                return;
+            }
+            int rssi = intent.getIntExtra(WifiManager.EXTRA_NEW_RSSI, WifiSignalTracker.RSSI_UNKNOWN);
+            if (rssi == WifiSignalTracker.RSSI_UNKNOWN || !wifiSignalTracker.setRssi(rssi)) {
+                return;
+            }
+            if (pendingNetType == NetStateManager.NetType.TYPE_WIFI) {
+                postUpdate(SOURCE_WIFI_RSSI, wifiRssiRunnable);
+            }
         }
     }
 
@@ -1202,7 +1902,7 @@ public class StatusBarMgr implements IStatusBarMgr {
                 return;
             }
 
-            postUpdateBattery(intent, 0);
+            postUpdateBattery(intent);
         }
     }
 
@@ -1272,8 +1972,7 @@ public class StatusBarMgr implements IStatusBarMgr {
                     break;
             }
 
-            boolean isHeadsetExist = isEnable;
-            updateStatusBar(() -> statusBar.onHeadSetChanged(isHeadsetExist));
+            postUpdateHeadset(isEnable);
         }
     }
 
@@ -1302,11 +2001,14 @@ public class StatusBarMgr implements IStatusBarMgr {
      */
     private final class SimEventMonitor {
 
-        /** 当前主卡的subId */
-        private int primarySubId;
+        /** 当前主卡的subId。可能在网络回调线程中被更新 */
+        private volatile int primarySubId;
+
+        /** 是否已经获取过初始的sim信息 */
+        private boolean initialized = false;
 
-        /** 目前已知的卡信息集。键为slotId，值为对应slotId的sim卡信息 */
-        private final HashMap<Integer, SimInfo> simInfoMap = new HashMap<>();
+        /** 目前已知的卡信息，以slotId为索引 */
+        private final SimStore simStore;
 
         /** sim状态改变，可感知拔插事件 */
         private static final String ACTION_SIM_STATE_CHANGED = "android.intent.action.SIM_STATE_CHANGED";
@@ -1324,6 +2026,16 @@ public class StatusBarMgr implements IStatusBarMgr {
          * "subscription":int
          */
         private static final String ACTION_DEF_SUBSCRIPTION_CHANGED = SubscriptionManager.ACTION_DEFAULT_SUBSCRIPTION_CHANGED;
+        /**
+         * 默认流量卡变更时，系统将发布此类广播（隐藏的广播，但未被限制接收）。
+         * 携带参数：
+         * {@link SubscriptionManager#EXTRA_SUBSCRIPTION_INDEX}:int
+         * "subscription":int
+         */
+        private static final String ACTION_DEF_DATA_SUBSCRIPTION_CHANGED = "android.intent.action.ACTION_DEFAULT_DATA_SUBSCRIPTION_CHANGED";
+
+        /** 由网络能力变化兜底检查默认流量卡的最小间隔 */
+        private static final long DATA_SIM_FALLBACK_INTERVAL_MS = 30_000;
 //        /** 只要有数据、电话、短信任一发生改变，系统将发布此类广播（好像没作用） */
 //        private static final String ACTION_SUB_DEF_CHANGED = "android.intent.action.SUB_DEFAULT_CHANGED";
 //        /** sms短信卡发生变动时，系统将发布此类广播 */
@@ -1333,22 +2045,33 @@ public class StatusBarMgr implements IStatusBarMgr {
 
         private SimEventReceiver receiver = null;
 
+        private DataSimEventReceiver dataSimReceiver = null;
+
+        /** 上一次兜底检查默认流量卡的时间 */
+        private volatile long lastDataSimFallbackAt = 0;
+
         private SubscriptionManager.OnSubscriptionsChangedListener subscriptionChangeListener = null;
 
-        private PhoneStateChangeListener phoneStateListener = null;
+        /** 每个可用sim卡的状态监听器，以subId区分 */
+        private final PhoneStateRegistry phoneStateRegistry = new PhoneStateRegistry();
 
-        /**
-         * 通过网络变化，检测流量卡的变更。
-         * 如果当前未在使用移动数据网络时，流量卡发生变更，则无法监听到。但此时也不需要关心其变化。
-         */
-        private INetworkCallback dataSimEventCallback = null;
+        public SimEventMonitor() {
+            setPrimarySubId(Integer.MIN_VALUE);
+
+            TelephonyManager tm = getTelephonyMgr();
+            simStore = new SimStore(tm == null ? 1 : tm.getPhoneCount(), subscriptionCache);
+        }
 
         /**
-         * 构造方法中获取初始的可用sim卡数量和流量卡subId
+         * 获取初始的可用sim卡数量和流量卡subId。需要在引擎线程中调用，以使监听器回调到引擎线程
          */
-        public SimEventMonitor() {
-            setPrimarySubId(Integer.MIN_VALUE);
-            if (appContext.checkSelfPermission(Manifest.permission.READ_PHONE_STATE) != PackageManager.PERMISSION_GRANTED) {
+        private void init() {
+            if (initialized) {
+                return;
+            }
+            initialized = true;
+
+            if (!permissionCache.isGranted(Manifest.permission.READ_PHONE_STATE)) {
                 return;
             }
             TelephonyManager tm = getTelephonyMgr();
@@ -1363,59 +2086,46 @@ public class StatusBarMgr implements IStatusBarMgr {
 
             setPrimarySubId(SubscriptionManager.getDefaultDataSubscriptionId());
 
-            List<SubscriptionInfo> list = ssm.getActiveSubscriptionInfoList();
-            if (list != null) {
-                for (SubscriptionInfo info : list) {
-                    if (info == null) {
-                        continue;
-                    }
-                    int subId = info.getSubscriptionId();
-                    TelephonyManager subTm = tm.createForSubscriptionId(subId);
-                    if (subTm == null) {
-                        continue;
-                    }
+            int slotCount = subscriptionCache.getSlotCount();
+            for (int slotId = 0; slotId < slotCount; slotId++) {
+                int subId = subscriptionCache.getSubId(slotId);
+                TelephonyManager subTm = subscriptionCache.getTelephonyManager(subId);
+                if (subTm == null) {
+                    continue;
+                }
 
-                    int simState = subTm.getSimState();
-                    ServiceState serviceState = subTm.getServiceState();
-                    boolean isSimValid = SimInfo.isSimReady(simState);
-                    SimInfo simInfo = simInfoMap.get(info.getSimSlotIndex());
-                    if (isSimValid) {
-                        if (simInfo == null) {
-                            simInfo = new SimInfo(info.getSimSlotIndex());
-                            simInfoMap.put(simInfo.slotId, simInfo);
-                        }
-                        simInfo.subId = subId;
-                        simInfo.simState = simState;
-                        simInfo.serviceState = serviceState;
-                        simInfo.signalLevel = getSimSignalLevel(subTm);
+                int simState = subTm.getSimState();
+                ServiceState serviceState = subTm.getServiceState();
+                boolean isSimValid = SimInfo.isSimReady(simState);
+                if (isSimValid) {
+                    simStore.put(slotId, subId, simState, serviceState, getSimSignalLevel(subId, subTm));
 
-                        //在初始化时，设置一个监听，防止首次sim状态变化时，可能错过当次回调事件
-                        subTm.listen(getPhoneStateListener(simInfo.slotId, simInfo.subId), PhoneStateListener.LISTEN_SERVICE_STATE |PhoneStateListener.LISTEN_SIGNAL_STRENGTHS);
-                    }
+                    //在初始化时，设置一个监听，防止首次sim状态变化时，可能错过当次回调事件
+                    phoneStateRegistry.listen(slotId, subId, subTm);
                 }
             }
 
-            StatusBarLog.d("可用sim卡数量：" + simInfoMap.size() + ", 信息集：" + simInfoMap.toString());
+            StatusBarLog.d("可用sim卡数量：" + simStore.size() + ", 信息集：" + simStore);
         }
 
         /** 是否存在可用的sim */
         private boolean isAnySimAvailable() {
-            if (simInfoMap.isEmpty()) {
-                return false;
-            }
-
             boolean ret = false;
-            for (SimInfo info : simInfoMap.values()) {
-                ret |= SimInfo.isSimDataReg(info.serviceState);
+            for (int i = 0; i < simStore.getSlotCount(); i++) {
+                SimInfo info = simStore.get(i);
+                if (info != null) {
+                    ret |= SimRecord.isDataReg(info.getRecord());
+                }
             }
             return ret;
         }
 
         /**
          * 获取sim卡信号等级
-         * @param tm 目标sim卡信号等级的{@link TelephonyManager}对象
+         * @param subId 目标sim卡id
+         * @param tm    目标sim卡信号等级的{@link TelephonyManager}对象
          */
-        private int getSimSignalLevel(TelephonyManager tm) {
+        private int getSimSignalLevel(int subId, TelephonyManager tm) {
             int ret = SIM_SIGNAL_LEVEL_MAX;
             if (tm == null) {
                 return ret;
@@ -1426,31 +2136,11 @@ public class StatusBarMgr implements IStatusBarMgr {
                     ret = strength.getLevel();
                 }
             } else {
-                if (appContext.checkSelfPermission(Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+                if (!permissionCache.isGranted(Manifest.permission.ACCESS_COARSE_LOCATION)) {
                     return ret;
                 }
-                List<CellInfo> cellInfoList = tm.getAllCellInfo();
-                if (cellInfoList != null) {
-                    CellSignalStrength strength = null;
-                    for (CellInfo cellInfo : cellInfoList) {
-                        if (cellInfo instanceof CellInfoGsm) {
-                            strength = ((CellInfoGsm) cellInfo).getCellSignalStrength();
-                        } else if (cellInfo instanceof CellInfoCdma) {
-                            strength = ((CellInfoCdma) cellInfo).getCellSignalStrength();
-                            break;
-                        } else if (cellInfo instanceof CellInfoWcdma) {
-                            strength = ((CellInfoWcdma) cellInfo).getCellSignalStrength();
-                            break;
-                        } else if (cellInfo instanceof CellInfoLte) {
-                            strength = ((CellInfoLte) cellInfo).getCellSignalStrength();
-                            break;
-                        }
-                    }
-
-                    if (strength != null) {
-                        ret = strength.getLevel();
-                    }
-                }
+                //小区信息的查询可能阻塞，总是立即返回缓存的信号等级，缓存过期时在后台重新获取
+                ret = cellInfoProvider.getLevel(subId, tm, ret);
             }
             return ret;
         }
@@ -1467,33 +2157,45 @@ public class StatusBarMgr implements IStatusBarMgr {
             return "READY".equals(simState) || "LOADED".equals(simState);
         }
 
-        /** 获取默认流量卡的变更回调 */
-        private INetworkCallback getDataSimChangedCallback() {
-            if (dataSimEventCallback == null) {
-                dataSimEventCallback = new NetworkEventCallbackAdapter() {
-                    @Override
-                    public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
-                        if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.N) {
-                            return;
-                        }
-                        //2021/8/2 22:16 可以排除一些没必要的场景
-                        int newPrimarySubId = SubscriptionManager.getDefaultDataSubscriptionId();
-                        if (newPrimarySubId != primarySubId) {
-                            StatusBarLog.d(TAG + ": " + "默认流量卡变更。当前流量卡subId=" + newPrimarySubId);
-                            setPrimarySubId(newPrimarySubId);
-                        }
-                    }
+        /**
+         * 检查默认流量卡是否变更。默认流量卡的变更由{@link DataSimEventReceiver}得知，这里只在默认网络切换时调用，作为兜底
+         * @return 默认流量卡是否变更
+         */
+        private boolean checkDefaultDataSim() {
+            if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.N) {
+                return false;
+            }
+            lastDataSimFallbackAt = SystemClock.uptimeMillis();
+            //2021/8/2 22:16 可以排除一些没必要的场景
+            int newPrimarySubId = SubscriptionManager.getDefaultDataSubscriptionId();
+            if (newPrimarySubId != primarySubId) {
+                StatusBarLog.d(TAG + ": " + "默认流量卡变更。当前流量卡subId=" + newPrimarySubId);
+                setPrimarySubId(newPrimarySubId);
+                return true;
+            }
+            return false;
+        }
 
-                    @Override
-                    public void onLost(Network network) {
-                    }
+        /**
+         * 网络能力改变时，低频地兜底检查默认流量卡。网络能力在数据传输期间会频繁改变，因此限制检查的频率，且只检查移动网络
+         * @param capabilities 默认网络的能力
+         */
+        private void checkDefaultDataSimFallback(NetworkCapabilities capabilities) {
+            if (!capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+                return;
+            }
+            if (SystemClock.uptimeMillis() - lastDataSimFallbackAt < DATA_SIM_FALLBACK_INTERVAL_MS) {
+                return;
+            }
+            checkDefaultDataSim();
+        }
 
-                    @Override
-                    public void onUnavailable() {
-                    }
-                };
+        /** 获取默认流量卡变更的广播接收者 */
+        private BroadcastReceiver getDataSimEventBroadcastReceiver() {
+            if (dataSimReceiver == null) {
+                dataSimReceiver = new DataSimEventReceiver();
             }
-            return dataSimEventCallback;
+            return dataSimReceiver;
         }
 
         /** 获取sim拔插变化的广播接收者 */
@@ -1521,47 +2223,171 @@ public class StatusBarMgr implements IStatusBarMgr {
                         if (ssm == null || tm == null) {
                             return;
                         }
-                        if (appContext.checkSelfPermission(Manifest.permission.READ_PHONE_STATE) != PackageManager.PERMISSION_GRANTED) {
+                        if (!permissionCache.isGranted(Manifest.permission.READ_PHONE_STATE)) {
                             StatusBarLog.e("异常！无法获取必要的权限：" + Manifest.permission.READ_PHONE_STATE);
                             return;
                         }
 
-                        List<SubscriptionInfo> list = ssm.getActiveSubscriptionInfoList();
-                        if (list == null || list.isEmpty()) {
-                            simEventMonitor.simInfoMap.clear();
+                        subscriptionCache.invalidate();
+                        int slotCount = subscriptionCache.getSlotCount();
+                        boolean hasSubscription = false;
+                        for (int slotId = 0; slotId < slotCount; slotId++) {
+                            hasSubscription |= SubscriptionManager.isValidSubscriptionId(subscriptionCache.getSubId(slotId));
+                        }
+                        if (!hasSubscription) {
+                            phoneStateRegistry.clear();
+                            simEventMonitor.simStore.clear();
                             StatusBarLog.d(TAG + ": " + "没有可用的sim卡，更新...");
-                            updateStatusBar(() -> statusBar.onSimChanged(getSimMapClone(), primarySubId));
+                            publishSimInfo();
                             return;
                         }
 
-                        for (SubscriptionInfo info : list) {
-                            int subId = Integer.MIN_VALUE;
-                            TelephonyManager subTm = null;
-                            if (info != null) {
-                                subId = info.getSubscriptionId();
-                                subTm = tm.createForSubscriptionId(subId);
-                            }
+                        //每个可用的sim卡保持一个监听器，已不可用的sim卡移除监听器
+                        phoneStateRegistry.beginSync();
+                        for (int slotId = 0; slotId < slotCount; slotId++) {
+                            int subId = subscriptionCache.getSubId(slotId);
+                            TelephonyManager subTm = subscriptionCache.getTelephonyManager(subId);
                             if (subTm == null) {
                                 continue;
                             }
 
                             int simState = subTm.getSimState();
                             if (SimInfo.isSimReady(simState)) {
-                                subTm.listen(new PhoneStateChangeListener(info.getSimSlotIndex(), subId),
-                                        PhoneStateListener.LISTEN_SIGNAL_STRENGTHS | PhoneStateListener.LISTEN_SERVICE_STATE);
+                                phoneStateRegistry.listen(slotId, subId, subTm);
                             }
                         }
+                        phoneStateRegistry.endSync();
                     }
                 };
             }
             return subscriptionChangeListener;
         }
 
-        private PhoneStateChangeListener getPhoneStateListener(int slotId, int subId) {
-            if (phoneStateListener == null) {
-                phoneStateListener = new PhoneStateChangeListener(slotId, subId);
+        /**
+         * 丢弃已创建的监听器。监听器会回调到创建它时所在的线程，因此在切换引擎线程后需要重新创建
+         */
+        private void resetListeners() {
+            subscriptionChangeListener = null;
+            phoneStateRegistry.clear();
+            initialized = false;
+        }
+
+        /**
+         * sim状态监听器的注册表，以subId为键，保证每个可用的sim卡有且只有一个监听器。只应在引擎线程中访问
+         */
+        private final class PhoneStateRegistry {
+
+            private final SparseArray<PhoneStateEntry> entries = new SparseArray<>(2);
+
+            /** 当前的同步批次，未在本批次中出现的监听器将被移除 */
+            private int generation = 0;
+
+            /** 当前存活的监听器数量 */
+            private volatile int liveCount = 0;
+
+            /** 累计注册的监听器数量 */
+            private volatile int registerCount = 0;
+
+            /**
+             * 确保目标sim卡有一个监听器。已存在且卡槽未变时，保留原有的监听器
+             * @param slotId 卡槽id
+             * @param subId  sim卡id
+             * @param subTm  目标sim卡的{@link TelephonyManager}对象
+             */
+            private void listen(int slotId, int subId, TelephonyManager subTm) {
+                PhoneStateEntry entry = entries.get(subId);
+                if (entry != null) {
+                    if (entry.slotId == slotId) {
+                        entry.generation = generation;
+                        return;
+                    }
+                    unlisten(entry);
+                    entries.remove(subId);
+                }
+
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                    SimTelephonyCallback callback = new SimTelephonyCallback(slotId, subId);
+                    Executor executor = telephonyExecutor;
+                    try {
+                        subTm.registerTelephonyCallback(executor == null ? engineExecutor : executor, callback);
+                    } catch (SecurityException e) {
+                        StatusBarLog.e("异常！无法注册sim状态回调：" + e.getMessage());
+                        return;
+                    }
+                    entry = new PhoneStateEntry(subTm, slotId, null, callback, generation);
+                    //让基带只在信号等级跨越边界时上报
+                    entry.thresholdRequest = SignalThresholds.apply(subTm);
+                } else {
+                    PhoneStateChangeListener listener = new PhoneStateChangeListener(slotId, subId);
+                    subTm.listen(listener, PhoneStateListener.LISTEN_SERVICE_STATE | PhoneStateListener.LISTEN_SIGNAL_STRENGTHS);
+                    entry = new PhoneStateEntry(subTm, slotId, listener, null, generation);
+                }
+                entries.put(subId, entry);
+                registerCount++;
+                liveCount = entries.size();
+                StatusBarLog.d("添加sim状态监听：slotId=" + slotId + ", subId=" + subId + ", 存活数量=" + liveCount);
+            }
+
+            /** 开始一次同步，之后对每个可用的sim卡调用{@link #listen(int, int, TelephonyManager)} */
+            private void beginSync() {
+                generation++;
+            }
+
+            /** 结束同步，移除本批次中未出现的监听器 */
+            private void endSync() {
+                for (int i = entries.size() - 1; i >= 0; i--) {
+                    PhoneStateEntry entry = entries.valueAt(i);
+                    if (entry.generation != generation) {
+                        unlisten(entry);
+                        entries.removeAt(i);
+                    }
+                }
+                liveCount = entries.size();
+            }
+
+            /** 移除全部监听器 */
+            private void clear() {
+                for (int i = 0; i < entries.size(); i++) {
+                    unlisten(entries.valueAt(i));
+                }
+                entries.clear();
+                liveCount = 0;
+            }
+
+            private void unlisten(PhoneStateEntry entry) {
+                try {
+                    if (entry.listener != null) {
+                        entry.subTm.listen(entry.listener, PhoneStateListener.LISTEN_NONE);
+                    } else if (entry.callback != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                        entry.subTm.unregisterTelephonyCallback(entry.callback);
+                        SignalThresholds.clear(entry.subTm, entry.thresholdRequest);
+                        entry.thresholdRequest = null;
+                    }
+                } catch (Exception ignore) { }
+            }
+        }
+
+        /**
+         * 已注册的sim状态监听器，以及对应的{@link TelephonyManager}对象。两种监听方式只会存在其一
+         */
+        private final class PhoneStateEntry {
+
+            private final TelephonyManager subTm;
+            private final int slotId;
+            private final PhoneStateChangeListener listener;
+            private final TelephonyCallback callback;
+            private int generation;
+            /** 已设置的信号强度上报门限，未设置时为null */
+            private Object thresholdRequest = null;
+
+            private PhoneStateEntry(TelephonyManager subTm, int slotId,
+                                    PhoneStateChangeListener listener, TelephonyCallback callback, int generation) {
+                this.subTm = subTm;
+                this.slotId = slotId;
+                this.listener = listener;
+                this.callback = callback;
+                this.generation = generation;
             }
-            return phoneStateListener;
         }
 
         private int getPrimarySubId() {
@@ -1574,85 +2400,197 @@ public class StatusBarMgr implements IStatusBarMgr {
         }
 
         /**
-         * sim状态更新的监听器
-         * @see #listenSimChange()
+         * 是否为数据卡。数据卡未知时，视为数据卡
+         * @param subId sim卡id
          */
-        private final class PhoneStateChangeListener extends PhoneStateListener {
+        private boolean isDataSub(int subId) {
+            int dataSubId = primarySubId;
+            return !SubscriptionManager.isValidSubscriptionId(dataSubId) || dataSubId == subId;
+        }
 
-            private final int slotId;
-            private int subId;
+        /**
+         * 从服务状态中获取数据网络的制式
+         * @param serviceState sim卡的服务状态
+         * @return 数据网络的制式，未注册时返回{@link TelephonyManager#NETWORK_TYPE_UNKNOWN}
+         */
+        @RequiresApi(api = Build.VERSION_CODES.R)
+        private int getDataNetworkType(ServiceState serviceState) {
+            if (serviceState == null) {
+                return TelephonyManager.NETWORK_TYPE_UNKNOWN;
+            }
+            for (NetworkRegistrationInfo info : serviceState.getNetworkRegistrationInfoList()) {
+                if ((info.getDomain() & NetworkRegistrationInfo.DOMAIN_PS) != 0
+                        && info.getTransportType() == AccessNetworkConstants.TRANSPORT_TYPE_WWAN) {
+                    return info.getAccessNetworkTechnology();
+                }
+            }
+            return TelephonyManager.NETWORK_TYPE_UNKNOWN;
+        }
 
-            private PhoneStateChangeListener(int slotId, int subId) {
-                this.slotId = slotId;
-                this.subId = subId;
+        /**
+         * 处理sim卡服务状态的改变，由两种监听引擎共用。只应在引擎线程中调用
+         * @param slotId       卡槽id
+         * @param subId        监听器记录的sim卡id
+         * @param serviceState 新的服务状态
+         * @return 最新的sim卡id
+         */
+        private int handleServiceStateChanged(int slotId, int subId, ServiceState serviceState) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+                return subId;
             }
+            boolean isStateChange = false;
 
-            @Override
-            public void onServiceStateChanged(ServiceState serviceState) {
-                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
-                    return;
+            StatusBarLog.d("SIM " + slotId + "状态变更\n[" + serviceState.toString() + "]");
+
+            //服务状态改变时，数据卡的制式可能也已改变。安卓12及以上由显示信息回调提供制式
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S && isDataSub(subId)) {
+                NetStateManager netStateManager = NetStateManager.getInstance(appContext);
+                boolean changed;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                    changed = netStateManager.updateCellularNetworkType(getDataNetworkType(serviceState));
+                } else {
+                    //安卓11以下无法从服务状态得知数据网络的制式，只能向系统查询
+                    changed = netStateManager.refreshCellularNetworkType();
+                }
+                if (changed) {
+                    postUpdate(SOURCE_NETWORK_TYPE, networkResolveRunnable);
                 }
-                boolean isStateChange = false;
+            }
+
+            //由于这里只改变卡的业务服务状态，但不改变sim卡的数量，因此不会新增/减少sim卡记录
 
-                StatusBarLog.d("SIM " + slotId + "状态变更\n[" + serviceState.toString() + "]");
+            SimInfo simInfo = simStore.get(slotId);
+            if (simInfo == null) {
+                return subId;
+            }
 
-                //由于这里只改变卡的业务服务状态，但不改变sim卡的数量，因此不会新增/减少sim卡记录
+            if (SimInfo.isSimDataReg(serviceState)) {
+                isStateChange = !simInfo.isDataAvailable();
 
-                SimInfo simInfo = simInfoMap.get(slotId);
-                if (simInfo == null) {
-                    return;
+                if (!permissionCache.isGranted(Manifest.permission.READ_PHONE_STATE)) {
+                    StatusBarLog.e("异常！无法获取相关权限：" + Manifest.permission.READ_PHONE_STATE);
+                    return subId;
+                }
+                int cachedSubId = subscriptionCache.getSubId(slotId);
+                if (SubscriptionManager.isValidSubscriptionId(cachedSubId)) {
+                    subId = cachedSubId;
                 }
 
-                if (SimInfo.isSimDataReg(serviceState)) {
-                    isStateChange = !SimInfo.isSimReady(simInfo.simState) || !SimInfo.isSimDataReg(simInfo.serviceState);
+                //既然服务可用，则肯定是sim卡已就绪
+                simStore.put(slotId, subId, TelephonyManager.SIM_STATE_READY, serviceState, simInfo.getSignalLevel());
+            } else {
+                isStateChange = simInfo.isDataAvailable();
+                //记录新的服务状态，避免之后的回调被重复视为状态改变
+                simStore.put(slotId, simInfo.getSubId(), simInfo.getSimState(), serviceState, simInfo.getSignalLevel());
+            }
 
-                    SubscriptionManager ssm = getSubscriptionMgr();
-                    if (ssm != null) {
-                        if (appContext.checkSelfPermission(Manifest.permission.READ_PHONE_STATE) != PackageManager.PERMISSION_GRANTED) {
-                            StatusBarLog.e("异常！无法获取相关权限：" + Manifest.permission.READ_PHONE_STATE);
-                            return;
+            if (isStateChange) {
+                //卡的服务状态改变，有可能会引发默认流量卡的强制改变，就是从其它数量变成单sim卡的时候
+                if (SimInfo.isSimDataReg(serviceState) && primarySubId == subId) {
+                    //默认流量卡被关闭了，如果还有其他卡，则立即变更默认流量卡
+                    for (int slotKey = 0; slotKey < simStore.getSlotCount(); slotKey++) {
+                        if (slotKey == slotId) {
+                            continue;
                         }
-                        SubscriptionInfo info = ssm.getActiveSubscriptionInfoForSimSlotIndex(slotId);
-                        if (info != null) {
-                            subId = info.getSubscriptionId();
+                        SimInfo info = simStore.get(slotKey);
+                        if (info != null && info.isDataAvailable()) {
+                            StatusBarLog.d("因关闭当前流量卡，引起的默认流量卡变更");
+                            setPrimarySubId(info.getSubId());
                         }
-                        simInfo.subId = subId;
                     }
-
-                    //既然服务可用，则肯定是sim卡已就绪
-                    simInfo.simState = TelephonyManager.SIM_STATE_READY;
-                    simInfo.serviceState = serviceState;
-                } else {
-                    isStateChange = SimInfo.isSimReady(simInfo.simState) && SimInfo.isSimDataReg(simInfo.serviceState);
                 }
 
-                if (isStateChange) {
-                    //卡的服务状态改变，有可能会引发默认流量卡的强制改变，就是从其它数量变成单sim卡的时候
-                    if (SimInfo.isSimDataReg(serviceState) && primarySubId == subId) {
-                        //默认流量卡被关闭了，如果还有其他卡，则立即变更默认流量卡
-                        for (Integer slotKey : simInfoMap.keySet()) {
-                            if (slotKey == slotId) {
-                                continue;
-                            }
-                            SimInfo info = simInfoMap.get(slotKey);
-                            if (info != null
-                                    && SimInfo.isSimReady(info.simState)
-                                    && SimInfo.isSimDataReg(info.getServiceState())) {
-                                StatusBarLog.d("因关闭当前流量卡，引起的默认流量卡变更");
-                                setPrimarySubId(info.subId);
-                            }
-                        }
-                    }
+                StatusBarLog.d("sim" + slotId + "数据服务状态变更");
+                postUpdate(SOURCE_SIM_SERVICE, simServiceRunnable);
 
-                    StatusBarLog.d("sim" + slotId + "数据服务状态变更");
-                    updateStatusBar(() -> {
-                        statusBar.onSimChanged(getSimMapClone(), primarySubId);
+                //laiyx 2021/12/17 10:38 为了逻辑效果一致，更新一下信号类型。这也可以做到一定程度的容错
+                postUpdate(SOURCE_NETWORK_TYPE, networkResolveRunnable);
+            }
+            return subId;
+        }
+
+        /**
+         * 处理sim卡信号强度的改变，由两种监听引擎共用。只应在引擎线程中调用
+         * @param slotId         卡槽id
+         * @param signalStrength 新的信号强度
+         */
+        private void handleSignalStrengthsChanged(int slotId, SignalStrength signalStrength) {
+            SimInfo simInfo = simStore.get(slotId);
+            boolean simEnable = false;
+            if (simInfo != null) {
+                simEnable = simInfo.isDataAvailable();
+            }
+            if (!simEnable) {
+                return ;
+            }
+
+            int level = Math.min(signalStrength.getLevel(), SIM_SIGNAL_LEVEL_MAX);
+//            StatusBarLog.d("SIM " + slotId + "信号强度回调, 新level=" + level + ", 旧level=" + simInfo.getSignalLevel());
+            long now = SystemClock.uptimeMillis();
+            int filtered = simLevelFilter.filter(slotId, simInfo.getSignalLevel(), level, now);
+            if (filtered != SignalLevelFilter.LEVEL_PENDING) {
+                applySignalLevel(slotId, filtered);
+            }
+            scheduleSignalLevelDwell();
+        }
 
-                        //laiyx 2021/12/17 10:38 为了逻辑效果一致，更新一下信号类型。这也可以做到一定程度的容错
-                        updateNetworkType(NetStateManager.getCurNetworkType(appContext));
-                    });
+        /**
+         * 驻留时间到期，使保持足够时间的信号等级生效
+         */
+        private void checkSignalLevelDwell() {
+            long now = SystemClock.uptimeMillis();
+            for (int slotId = 0; slotId < simLevelFilter.getSlotCount(); slotId++) {
+                int level = simLevelFilter.poll(slotId, now);
+                if (level == SignalLevelFilter.LEVEL_PENDING) {
+                    continue;
+                }
+                //驻留期间sim卡可能已不可用
+                SimInfo simInfo = simStore.get(slotId);
+                if (simInfo != null && simInfo.isDataAvailable()) {
+                    applySignalLevel(slotId, level);
                 }
             }
+            scheduleSignalLevelDwell();
+        }
+
+        private void scheduleSignalLevelDwell() {
+            Handler handler = engineHandler;
+            handler.removeCallbacks(simLevelDwellRunnable);
+            long deadline = simLevelFilter.nextDeadline();
+            if (deadline != Long.MAX_VALUE) {
+                handler.postAtTime(simLevelDwellRunnable, deadline);
+            }
+        }
+
+        private void applySignalLevel(int slotId, int level) {
+            if (simStore.setSignalLevel(slotId, level)) {
+                postUpdate(SOURCE_SIM_SIGNAL, simSignalRunnable);
+
+                //laiyx 2021/12/22 10:36 为了逻辑效果一致，更新一下网络类型。这也可以做到一定程度的容错
+                postUpdate(SOURCE_NETWORK_TYPE, networkResolveRunnable);
+
+                StatusBarLog.d("SIM 信号强度更新，slotId=" + slotId + ", level=" + level);
+            }
+        }
+
+        /**
+         * sim状态更新的监听器
+         * @see #listenSimChange()
+         */
+        private final class PhoneStateChangeListener extends PhoneStateListener {
+
+            private final int slotId;
+            private int subId;
+
+            private PhoneStateChangeListener(int slotId, int subId) {
+                this.slotId = slotId;
+                this.subId = subId;
+            }
+
+            @Override
+            public void onServiceStateChanged(ServiceState serviceState) {
+                subId = handleServiceStateChanged(slotId, subId, serviceState);
+            }
 
             @Override
             public void onSignalStrengthsChanged(SignalStrength signalStrength) {
@@ -1697,28 +2635,90 @@ public class StatusBarMgr implements IStatusBarMgr {
 //                    }
 //                }
 
-                SimInfo simInfo = simInfoMap.get(slotId);
-                boolean simEnable = false;
-                if (simInfo != null) {
-                    simEnable = SimInfo.isSimReady(simInfo.simState) && SimInfo.isSimDataReg(simInfo.serviceState);
-                }
-                if (!simEnable) {
-                    return ;
-                }
+                handleSignalStrengthsChanged(slotId, signalStrength);
+            }
+        }
+
+        /**
+         * 安卓12及以上的sim状态回调，执行于{@link #setTelephonyExecutor(Executor)}指定的线程，
+         * 提取数据后，在事件引擎线程中更新sim信息
+         * @see #listenSimChange()
+         */
+        @RequiresApi(api = Build.VERSION_CODES.S)
+        private final class SimTelephonyCallback extends TelephonyCallback implements
+                TelephonyCallback.ServiceStateListener,
+                TelephonyCallback.SignalStrengthsListener,
+                TelephonyCallback.DisplayInfoListener {
 
-                int level = Math.min(signalStrength.getLevel(), SIM_SIGNAL_LEVEL_MAX);
-//                StatusBarLog.d("SIM " + slotId + "信号强度回调, 新level=" + level + ", 旧level=" + simInfo.signalLevel);
-                if (simInfo.signalLevel != level) {
-                    simInfo.signalLevel = level;
-                    updateStatusBar(() -> {
-                        statusBar.onSimChanged(getSimMapClone(), primarySubId);
+            private final int slotId;
+            private volatile int subId;
 
-                        //laiyx 2021/12/22 10:36 为了逻辑效果一致，更新一下网络类型。这也可以做到一定程度的容错
-                        updateNetworkType(NetStateManager.getCurNetworkType(appContext));
-                    });
+            private SimTelephonyCallback(int slotId, int subId) {
+                this.slotId = slotId;
+                this.subId = subId;
+            }
+
+            @Override
+            public void onServiceStateChanged(ServiceState serviceState) {
+                runOnEngine(() -> subId = handleServiceStateChanged(slotId, subId, serviceState));
+            }
+
+            @Override
+            public void onSignalStrengthsChanged(SignalStrength signalStrength) {
+                StatusBarLog.d("SIM " + slotId + "信号变更\n[" + signalStrength + "]");
+                runOnEngine(() -> handleSignalStrengthsChanged(slotId, signalStrength));
+            }
 
-                    StatusBarLog.d("SIM 信号强度更新，slotId=" + slotId + ", level=" + level);
+            @Override
+            public void onDisplayInfoChanged(TelephonyDisplayInfo telephonyDisplayInfo) {
+                //显示的网络类型可能被覆盖（如5G NSA），以覆盖后的类型为准
+                StatusBarLog.d("SIM " + slotId + "显示信息变更\n[" + telephonyDisplayInfo + "]");
+                int networkType;
+                switch (telephonyDisplayInfo.getOverrideNetworkType()) {
+                    case TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NR_NSA:
+                    case TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NR_NSA_MMWAVE:
+                    case TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NR_ADVANCED:
+                        networkType = TelephonyManager.NETWORK_TYPE_NR;
+                        break;
+                    default:
+                        networkType = telephonyDisplayInfo.getNetworkType();
+                        break;
                 }
+                runOnEngine(() -> {
+                    if (isDataSub(subId)
+                            && NetStateManager.getInstance(appContext).updateCellularNetworkType(networkType)) {
+                        postUpdate(SOURCE_NETWORK_TYPE, networkResolveRunnable);
+                    }
+                });
+            }
+        }
+
+        /**
+         * 默认流量卡变更的检测
+         */
+        private final class DataSimEventReceiver extends BroadcastReceiver {
+
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (intent == null || !ACTION_DEF_DATA_SUBSCRIPTION_CHANGED.equals(intent.getAction())) {
+                    return;
+                }
+                int subId = intent.getIntExtra(SubscriptionManager.EXTRA_SUBSCRIPTION_INDEX,
+                        intent.getIntExtra("subscription", SubscriptionManager.INVALID_SUBSCRIPTION_ID));
+                if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+                    //未携带有效的subId（如关闭了移动数据），以系统的查询结果为准
+                    subId = SubscriptionManager.getDefaultDataSubscriptionId();
+                }
+                lastDataSimFallbackAt = SystemClock.uptimeMillis();
+                if (subId == primarySubId) {
+                    return;
+                }
+
+                StatusBarLog.d(TAG + ": " + "默认流量卡变更广播。当前流量卡subId=" + subId);
+                setPrimarySubId(subId);
+                //已记录的制式属于之前的数据卡，等待新数据卡的服务状态回调再更新
+                NetStateManager.getInstance(appContext).updateCellularNetworkType(TelephonyManager.NETWORK_TYPE_UNKNOWN);
+                postUpdate(SOURCE_SIM_SERVICE, simServiceRunnable);
             }
         }
 
@@ -1741,7 +2741,7 @@ public class StatusBarMgr implements IStatusBarMgr {
                 if (tm == null || ssm == null) {
                     return;
                 }
-                if (context.checkSelfPermission(Manifest.permission.READ_PHONE_STATE) != PackageManager.PERMISSION_GRANTED) {
+                if (!permissionCache.isGranted(Manifest.permission.READ_PHONE_STATE)) {
                     return;
                 }
                 if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.O) {
@@ -1788,71 +2788,66 @@ public class StatusBarMgr implements IStatusBarMgr {
                             + "\n, keys=" + (bundle == null ? null : Arrays.toString(bundle.keySet().toArray(new String[0]))));
                 }
 
+                //插拔卡会改变订阅信息
+                subscriptionCache.invalidate();
                 if (!isSimReady(ss)) {
                     //移除不可用的sim卡记录
-                    simInfoMap.remove(slot);
+                    simStore.remove(slot);
                 } else {
-                    TelephonyManager subTm = tm.createForSubscriptionId(subscription);
+                    TelephonyManager subTm = subscriptionCache.getTelephonyManager(subscription);
                     if (subTm == null) {
-                        simInfoMap.remove(slot);
+                        simStore.remove(slot);
                     } else {
                         int simState = subTm.getSimState();
                         ServiceState serviceState = subTm.getServiceState();
-                        int signalLevel = getSimSignalLevel(subTm);
-                        SimInfo simInfo = simInfoMap.get(slot);
-                        if (simInfo == null) {
-                            simInfo = new SimInfo(slot, subscription, simState, serviceState, signalLevel);
-                            simInfoMap.put(slot, simInfo);
-                        } else {
-                            simInfo.subId = subscription;
-                            simInfo.simState = simState;
-                            simInfo.serviceState = serviceState;
-                            simInfo.signalLevel = signalLevel;
-                        }
+                        int signalLevel = getSimSignalLevel(subscription, subTm);
+                        simStore.put(slot, subscription, simState, serviceState, signalLevel);
                     }
                 }
 
                 //拔插卡有可能强制改变默认流量卡，就是从其它数量变成单sim卡的时候
-                if (simInfoMap.size() == 1) {
-                    for (Integer key : simInfoMap.keySet()) {
-                        SimInfo info = simInfoMap.get(key);
-                        if (info != null && SimInfo.isSimReady(info.simState) && SimInfo.isSimDataReg(info.serviceState)) {
-                            StatusBarLog.d("由于拔插卡导致的流量卡变更: slot=" + info.slotId);
-                            setPrimarySubId(info.subId);
+                if (simStore.size() == 1) {
+                    for (int i = 0; i < simStore.getSlotCount(); i++) {
+                        SimInfo info = simStore.get(i);
+                        if (info == null) {
+                            continue;
+                        }
+                        if (info.isDataAvailable()) {
+                            StatusBarLog.d("由于拔插卡导致的流量卡变更: slot=" + info.getSlotId());
+                            setPrimarySubId(info.getSubId());
                         }
                         break;
                     }
                 }
 
-                StatusBarLog.d("sim数量变更... 当前sim信息集=" + simInfoMap);
-                updateStatusBar(() -> statusBar.onSimChanged(getSimMapClone(), primarySubId));
+                StatusBarLog.d("sim数量变更... 当前sim信息集=" + simStore);
+                publishSimInfo();
             }
         }
     }
 
     /**
-     * sim信息类
+     * sim信息类。字段打包在一个{@link SimRecord}记录中，{@link ServiceState}对象只在调用{@link #getServiceState()}时获取并缓存
      */
     public static final class SimInfo {
 
-        /** sim卡槽id，从0开始计数。一般在插卡的情况下，slotId为0的卡槽上的卡，是默认订阅（default subscription） */
-        private final int slotId;
-
-        /** sim卡id */
-        private int subId;
+        /**
+         * 打包的sim卡记录，包含卡槽id、sim卡id、sim卡状态、数据业务注册状态、漫游、仅紧急呼叫和信号等级，见{@link SimRecord}。
+         *  sim卡槽id从0开始计数，一般在插卡的情况下，slotId为0的卡槽上的卡，是默认订阅（default subscription）。
+         *  当sim卡不可用时，信号等级无意义（但一般为{@link #SIM_SIGNAL_LEVEL_MAX}）;
+         *  当sim卡存在有效信号时，信号等级取值范围为[0, 4]，值越高表示信号强度越大。
+         *  在处理信号强度之前，应先通过sim卡状态和数据业务注册状态判断此时信号强度是否有效。
+         */
+        private long record;
 
-        /** sim卡状态，取值见{@link TelephonyManager#SIM_STATE_UNKNOWN}等SIM_STATE_XXX系列常量 */
-        private int simState;
+        /** 用于按需获取{@link ServiceState}，可能为null */
+        private final SubscriptionCache subscriptionCache;
 
-        /** sim卡的服务状态对象，可获得sim卡的某种服务状态，如果数据服务是否可用，语音电话服务是否可用等 */
-        private ServiceState serviceState;
+        /** 第一次调用{@link #getServiceState()}时获取的服务状态，记录改变时丢弃 */
+        private volatile ServiceState serviceStateCache = null;
 
-        /**
-         * sim卡信号等级。当sim卡不可用时，信号强度比无意义（但一般为{@link #SIM_SIGNAL_LEVEL_MAX}）;
-         *  当sim卡存在有效信号时，变量取值范围为[0, 4]，值越高表示信号强度越大。
-         *  在处理信号强度之前，应先通过{@link #simState}和{@link #serviceState}判断此时信号强度是否有效。
-         */
-        private @IntRange(from = 0, to = 4) int signalLevel;
+        /** 是否已被冻结。冻结后的对象由多个读取者共享，不允许再修改 */
+        private boolean frozen = false;
 
         /**
          * Instantiates a new Sim info.
@@ -1869,15 +2864,25 @@ public class StatusBarMgr implements IStatusBarMgr {
          * @param slotId       the slot id
          * @param subId        the sub id
          * @param simState     the sim state
-         * @param serviceState the service state
+         * @param serviceState the service state，只提取用到的字段，不保留对象
          * @param level        the level
          */
         public SimInfo(int slotId, int subId, int simState, ServiceState serviceState, @IntRange(from = 0, to = 4) int level) {
-            this.slotId = slotId;
-            this.subId = subId;
-            this.simState = simState;
-            this.serviceState = serviceState;
-            this.signalLevel = level;
+            this(SimRecord.pack(slotId, subId, simState, serviceState, level), null);
+        }
+
+        /**
+         * Instantiates a new Sim info.
+         *
+         * @param record 打包的sim卡记录，见{@link SimRecord}
+         */
+        public SimInfo(long record) {
+            this(record, null);
+        }
+
+        SimInfo(long record, SubscriptionCache subscriptionCache) {
+            this.record = record;
+            this.subscriptionCache = subscriptionCache;
         }
 
         /**
@@ -1910,18 +2915,19 @@ public class StatusBarMgr implements IStatusBarMgr {
          * @return the sim data reg state
          */
         public static int getSimDataRegState(ServiceState serviceState) {
-            int result = ServiceState.STATE_POWER_OFF;
             if (serviceState == null) {
-                return result;
-            }
-            String matchStr = "mDataRegState=";
-            String s = serviceState.toString();
-            int fieldIndex = s.indexOf(matchStr) + matchStr.length();
-            if (fieldIndex < matchStr.length()) {
-                return result;
+                return ServiceState.STATE_POWER_OFF;
             }
-            result = s.charAt(fieldIndex) - 48;
-            return result;
+            return SimRecord.parseDataRegState(serviceState.toString());
+        }
+
+        /**
+         * 获取打包的sim卡记录，用于低成本的复制与比较
+         *
+         * @return sim卡记录，见{@link SimRecord}
+         */
+        public long getRecord() {
+            return record;
         }
 
         /**
@@ -1930,7 +2936,7 @@ public class StatusBarMgr implements IStatusBarMgr {
          * @return the slot id
          */
         public int getSlotId() {
-            return slotId;
+            return SimRecord.getSlotId(record);
         }
 
         /**
@@ -1939,16 +2945,19 @@ public class StatusBarMgr implements IStatusBarMgr {
          * @return the sub id
          */
         public int getSubId() {
-            return subId;
+            return SimRecord.getSubId(record);
         }
 
         /**
          * Sets sub id.
          *
          * @param subId the sub id
+         * @throws UnsupportedOperationException 对象已被冻结，见{@link #isFrozen()}
          */
         public void setSubId(int subId) {
-            this.subId = subId;
+            checkFrozen();
+            record = SimRecord.withSubId(record, subId);
+            serviceStateCache = null;
         }
 
         /**
@@ -1957,34 +2966,95 @@ public class StatusBarMgr implements IStatusBarMgr {
          * @return the sim state
          */
         public int getSimState() {
-            return simState;
+            return SimRecord.getSimState(record);
         }
 
         /**
          * Sets sim state.
          *
          * @param simState the sim state
+         * @throws UnsupportedOperationException 对象已被冻结，见{@link #isFrozen()}
          */
         public void setSimState(int simState) {
-            this.simState = simState;
+            checkFrozen();
+            record = SimRecord.withSimState(record, simState);
+            serviceStateCache = null;
+        }
+
+        /**
+         * 获取数据业务的注册状态
+         *
+         * @return 取值见{@link ServiceState#STATE_IN_SERVICE}等常量
+         */
+        public int getDataRegState() {
+            return SimRecord.getDataRegState(record);
+        }
+
+        /**
+         * sim卡是否就绪，且数据业务已注册
+         *
+         * @return the boolean
+         */
+        public boolean isDataAvailable() {
+            return isSimReady(getSimState()) && SimRecord.isDataReg(record);
+        }
+
+        /**
+         * Is roaming.
+         *
+         * @return the boolean
+         */
+        public boolean isRoaming() {
+            return SimRecord.isRoaming(record);
+        }
+
+        /**
+         * Is emergency only.
+         *
+         * @return the boolean
+         */
+        public boolean isEmergencyOnly() {
+            return SimRecord.isEmergencyOnly(record);
         }
 
         /**
-         * Gets service state.
+         * 获取服务状态。第一次调用时向系统查询（跨进程调用，会阻塞调用线程），之后返回缓存的结果，直到记录改变。
+         * 需要{@link Manifest.permission#READ_PHONE_STATE}权限。只需要数据业务注册状态时，应使用{@link #getDataRegState()}
          *
-         * @return the service state
+         * @return the service state，无法查询时返回null
          */
         public ServiceState getServiceState() {
-            return serviceState;
+            ServiceState cache = serviceStateCache;
+            if (cache != null) {
+                return cache;
+            }
+            if (subscriptionCache == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+                return null;
+            }
+            TelephonyManager subTm = subscriptionCache.getTelephonyManager(getSubId());
+            if (subTm == null) {
+                return null;
+            }
+            try {
+                cache = subTm.getServiceState();
+            } catch (SecurityException e) {
+                StatusBarLog.e("异常！无法获取sim卡服务状态：" + e.getMessage());
+                return null;
+            }
+            serviceStateCache = cache;
+            return cache;
         }
 
         /**
          * Sets service state.
          *
-         * @param serviceState the service state
+         * @param serviceState the service state，只提取用到的字段，对象本身作为{@link #getServiceState()}的缓存
+         * @throws UnsupportedOperationException 对象已被冻结，见{@link #isFrozen()}
          */
         public void setServiceState(ServiceState serviceState) {
-            this.serviceState = serviceState;
+            checkFrozen();
+            record = SimRecord.withServiceState(record, serviceState);
+            serviceStateCache = serviceState;
         }
 
         /**
@@ -1993,45 +3063,54 @@ public class StatusBarMgr implements IStatusBarMgr {
          * @return the signal level
          */
         public int getSignalLevel() {
-            return signalLevel;
+            return SimRecord.getLevel(record);
         }
 
         /**
          * Sets signal level.
          *
          * @param signalLevel the signal level
+         * @throws UnsupportedOperationException 对象已被冻结，见{@link #isFrozen()}
          */
         public void setSignalLevel(int signalLevel) {
-            this.signalLevel = signalLevel;
+            checkFrozen();
+            record = SimRecord.withLevel(record, signalLevel);
+        }
+
+        /** 冻结对象，此后不允许再修改 */
+        void freeze() {
+            frozen = true;
         }
 
         /**
-         * 对象深拷贝，防止外部篡改  @return the sim info
+         * 是否已被冻结
+         * @return 是否已被冻结。冻结的对象可通过{@link #deepCopy()}得到可修改的副本
+         */
+        public boolean isFrozen() {
+            return frozen;
+        }
+
+        /**
+         * 检查对象是否可修改
+         * @throws UnsupportedOperationException 对象已被冻结
+         */
+        private void checkFrozen() {
+            if (frozen) {
+                throw new UnsupportedOperationException("SimInfo is shared and read-only, use deepCopy() to get a modifiable copy.");
+            }
+        }
+
+        /**
+         * 对象深拷贝，防止外部篡改。只复制打包的记录
          * @return {@link SimInfo}对象
          */
         public SimInfo deepCopy() {
-            return new SimInfo(slotId, subId, simState, new ServiceState(serviceState), signalLevel);
+            return new SimInfo(record, subscriptionCache);
         }
 
         @Override
         public String toString() {
-            int dataRegState = Integer.MIN_VALUE;
-            if (serviceState != null) {
-                String matchStr = "mDataRegState=";
-                String s = serviceState.toString();
-                int fieldIndex = s.indexOf(matchStr) + matchStr.length();
-                if (fieldIndex > matchStr.length()) {
-                    dataRegState = s.charAt(fieldIndex) - 48;
-                }
-            }
-
-            return "SimInfo{" +
-                    "slotId=" + slotId +
-                    ", subId=" + subId +
-                    ", simState=" + simState +
-                    ", serviceState=" + dataRegState +
-                    ", signalLevel=" + signalLevel +
-                    '}';
+            return "SimInfo{" + SimRecord.toString(record) + '}';
         }
     }
 }
\ No newline at end of file
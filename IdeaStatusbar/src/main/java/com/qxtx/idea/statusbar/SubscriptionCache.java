@@ -0,0 +1,166 @@
+package com.qxtx.idea.statusbar;
+
+import android.Manifest;
+import android.content.Context;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+import android.telephony.TelephonyManager;
+import android.util.SparseArray;
+
+import com.qxtx.idea.statusbar.tools.PermissionCache;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 18:05
+ * <p><b>Description</b></p> sim卡订阅信息的缓存，避免在每次事件中重复进行跨进程查询。
+ * <pre>
+ *  · 缓存卡槽到subId的映射，以及每个subId对应的{@link TelephonyManager}对象
+ *  · 只在订阅信息变化（插拔卡、订阅变更）时失效，失效后的第一次查询重新获取全部订阅信息
+ *  · 仍然存活的subId，重新获取后继续使用原有的{@link TelephonyManager}对象
+ *  · 记录命中和未命中的次数，用于调优
+ * </pre>
+ */
+final class SubscriptionCache {
+
+    private final Context context;
+
+    private final TelephonyManager tm;
+    private final SubscriptionManager ssm;
+
+    /** 缓存是否有效 */
+    private boolean valid = false;
+
+    /** 以卡槽为下标的subId，空卡槽为{@link SubscriptionManager#INVALID_SUBSCRIPTION_ID} */
+    private int[] subIdBySlot = new int[0];
+
+    /** 以subId为键的{@link TelephonyManager}对象 */
+    private final SparseArray<TelephonyManager> tmBySubId = new SparseArray<>(2);
+
+    private volatile long hitCount = 0;
+    private volatile long missCount = 0;
+
+    SubscriptionCache(Context context) {
+        this.context = context;
+        tm = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+        ssm = (SubscriptionManager) context.getSystemService(Context.TELEPHONY_SUBSCRIPTION_SERVICE);
+    }
+
+    /**
+     * 使缓存失效，在订阅信息变化时调用
+     */
+    synchronized void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * 获取卡槽数量
+     * @return 卡槽数量，无法获取订阅信息时返回0
+     */
+    synchronized int getSlotCount() {
+        ensureValid();
+        return subIdBySlot.length;
+    }
+
+    /**
+     * 获取卡槽中的sim卡的subId
+     * @param slotId 卡槽id
+     * @return subId，空卡槽或无法获取时返回{@link SubscriptionManager#INVALID_SUBSCRIPTION_ID}
+     */
+    synchronized int getSubId(int slotId) {
+        ensureValid();
+        if (slotId < 0 || slotId >= subIdBySlot.length) {
+            return SubscriptionManager.INVALID_SUBSCRIPTION_ID;
+        }
+        return subIdBySlot[slotId];
+    }
+
+    /**
+     * 获取指定sim卡的{@link TelephonyManager}对象
+     * @param subId sim卡id
+     * @return {@link TelephonyManager}对象，无法获取时返回null
+     */
+    synchronized TelephonyManager getTelephonyManager(int subId) {
+        if (tm == null || !SubscriptionManager.isValidSubscriptionId(subId)) {
+            return null;
+        }
+        TelephonyManager result = tmBySubId.get(subId);
+        if (result != null) {
+            hitCount++;
+            return result;
+        }
+
+        missCount++;
+        result = tm.createForSubscriptionId(subId);
+        if (result != null) {
+            tmBySubId.put(subId, result);
+        }
+        return result;
+    }
+
+    long getHitCount() {
+        return hitCount;
+    }
+
+    long getMissCount() {
+        return missCount;
+    }
+
+    private void ensureValid() {
+        if (valid) {
+            hitCount++;
+            return;
+        }
+        missCount++;
+        if (tm == null || ssm == null) {
+            return;
+        }
+        if (!PermissionCache.getInstance(context).isGranted(Manifest.permission.READ_PHONE_STATE)) {
+            //权限可能在之后获得，因此不标记为有效
+            subIdBySlot = new int[0];
+            return;
+        }
+
+        int[] slots = new int[Math.max(0, tm.getPhoneCount())];
+        Arrays.fill(slots, SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+        List<SubscriptionInfo> list = ssm.getActiveSubscriptionInfoList();
+        if (list != null) {
+            for (SubscriptionInfo info : list) {
+                if (info == null) {
+                    continue;
+                }
+                int slotId = info.getSimSlotIndex();
+                if (slotId < 0) {
+                    continue;
+                }
+                if (slotId >= slots.length) {
+                    int oldLength = slots.length;
+                    slots = Arrays.copyOf(slots, slotId + 1);
+                    Arrays.fill(slots, oldLength, slots.length, SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+                }
+                slots[slotId] = info.getSubscriptionId();
+            }
+        }
+
+        //移除已不存在的subId
+        for (int i = tmBySubId.size() - 1; i >= 0; i--) {
+            if (!contains(slots, tmBySubId.keyAt(i))) {
+                tmBySubId.removeAt(i);
+            }
+        }
+
+        subIdBySlot = slots;
+        valid = true;
+    }
+
+    private static boolean contains(int[] array, int value) {
+        for (int item : array) {
+            if (item == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
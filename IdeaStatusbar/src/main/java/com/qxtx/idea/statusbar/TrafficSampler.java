@@ -0,0 +1,219 @@
+package com.qxtx.idea.statusbar;
+
+import android.net.TrafficStats;
+import android.os.SystemClock;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 20:05
+ * <p><b>Description</b></p> 数据传输状态的采样器，以{@link TrafficStats}两次采样之间的字节增量，推导上行/下行状态和速率。
+ * <pre>
+ *  · 采样间隔自适应：有数据传输时使用最小间隔，链路空闲时逐次翻倍，直到最大间隔。需要显示网速时，固定使用最小间隔
+ *  · 最近的采样值保存在固定长度的环形缓冲区中（基本类型数组），采样过程不分配对象
+ *  · 速率以指数移动平均平滑，另外提供环形缓冲区覆盖的时间窗口内的平均速率
+ *  · 只在传输状态改变时才需要刷新状态栏
+ *  · 设备不支持流量统计时，总是返回{@link StatusBarMgr#TRANSFER_UNKNOWN}
+ *  · 只应在事件引擎线程中采样，速率可以在任意线程读取
+ * </pre>
+ */
+final class TrafficSampler {
+
+    /** 有数据传输时的采样间隔 */
+    static final long MIN_INTERVAL_MS = 1000;
+    /** 链路空闲时的最大采样间隔 */
+    static final long MAX_INTERVAL_MS = 8000;
+
+    /** 一次采样间隔内，字节增量超过此值才视为有数据传输，以过滤心跳等零星的数据包 */
+    private static final long ACTIVE_BYTES = 512;
+
+    /** 环形缓冲区的长度 */
+    private static final int RING_SIZE = 8;
+
+    /** 指数移动平均中，最新速率所占的权重 */
+    private static final float EMA_ALPHA = 0.4f;
+
+    /** 速率未知时的取值 */
+    static final long RATE_UNKNOWN = -1;
+
+    /** 环形缓冲区，依次为采样时间、累计上行字节数、累计下行字节数 */
+    private final long[] ringTime = new long[RING_SIZE];
+    private final long[] ringTx = new long[RING_SIZE];
+    private final long[] ringRx = new long[RING_SIZE];
+    /** 最新采样值的下标 */
+    private int ringHead = -1;
+    /** 有效的采样值数量 */
+    private int ringCount = 0;
+
+    private float emaTxRate = 0f;
+    private float emaRxRate = 0f;
+
+    private volatile long uploadRate = RATE_UNKNOWN;
+    private volatile long downloadRate = RATE_UNKNOWN;
+    private volatile long averageUploadRate = RATE_UNKNOWN;
+    private volatile long averageDownloadRate = RATE_UNKNOWN;
+
+    /** 是否固定使用最小采样间隔 */
+    private boolean fixedInterval = false;
+
+    private long interval = MIN_INTERVAL_MS;
+
+    private @StatusBarMgr.TransferState int state = StatusBarMgr.TRANSFER_UNKNOWN;
+
+    /**
+     * 重新开始采样，丢弃上一次的采样值
+     */
+    void reset() {
+        ringHead = -1;
+        ringCount = 0;
+        emaTxRate = 0f;
+        emaRxRate = 0f;
+        uploadRate = RATE_UNKNOWN;
+        downloadRate = RATE_UNKNOWN;
+        averageUploadRate = RATE_UNKNOWN;
+        averageDownloadRate = RATE_UNKNOWN;
+        interval = MIN_INTERVAL_MS;
+        state = StatusBarMgr.TRANSFER_UNKNOWN;
+    }
+
+    /**
+     * 设置是否固定使用最小采样间隔，用于需要逐秒显示网速的场景
+     * @param fixed 是否固定
+     */
+    void setFixedInterval(boolean fixed) {
+        fixedInterval = fixed;
+        if (fixed) {
+            interval = MIN_INTERVAL_MS;
+        }
+    }
+
+    /**
+     * 采样一次
+     * @return 传输状态是否改变
+     */
+    boolean sample() {
+        long txBytes = TrafficStats.getTotalTxBytes();
+        long rxBytes = TrafficStats.getTotalRxBytes();
+        if (txBytes == TrafficStats.UNSUPPORTED || rxBytes == TrafficStats.UNSUPPORTED) {
+            interval = MAX_INTERVAL_MS;
+            return setState(StatusBarMgr.TRANSFER_UNKNOWN);
+        }
+        long now = SystemClock.uptimeMillis();
+
+        int newState = StatusBarMgr.TRANSFER_UNKNOWN;
+        if (ringCount > 0) {
+            //计数器可能因网络接口重置而变小，此时视为无增量
+            long txDelta = Math.max(0, txBytes - ringTx[ringHead]);
+            long rxDelta = Math.max(0, rxBytes - ringRx[ringHead]);
+            long elapsed = Math.max(1, now - ringTime[ringHead]);
+            updateRate(txDelta * 1000 / elapsed, rxDelta * 1000 / elapsed);
+
+            boolean upload = txDelta > ACTIVE_BYTES;
+            boolean download = rxDelta > ACTIVE_BYTES;
+            if (upload && download) {
+                newState = StatusBarMgr.TRANSFER_DUAL;
+            } else if (upload) {
+                newState = StatusBarMgr.TRANSFER_UPLOAD;
+            } else if (download) {
+                newState = StatusBarMgr.TRANSFER_DOWNLOAD;
+            }
+        }
+        push(now, txBytes, rxBytes);
+        updateAverageRate();
+
+        if (newState == StatusBarMgr.TRANSFER_UNKNOWN && !fixedInterval) {
+            interval = Math.min(MAX_INTERVAL_MS, interval * 2);
+        } else {
+            interval = MIN_INTERVAL_MS;
+        }
+        return setState(newState);
+    }
+
+    /**
+     * 获取平滑后的上行速率
+     * @return 上行速率，单位为字节/秒，未采样时返回{@link #RATE_UNKNOWN}
+     */
+    long getUploadRate() {
+        return uploadRate;
+    }
+
+    /**
+     * 获取平滑后的下行速率
+     * @return 下行速率，单位为字节/秒，未采样时返回{@link #RATE_UNKNOWN}
+     */
+    long getDownloadRate() {
+        return downloadRate;
+    }
+
+    /**
+     * 获取环形缓冲区覆盖的时间窗口内的平均上行速率
+     * @return 上行速率，单位为字节/秒，未采样时返回{@link #RATE_UNKNOWN}
+     */
+    long getAverageUploadRate() {
+        return averageUploadRate;
+    }
+
+    /**
+     * 获取环形缓冲区覆盖的时间窗口内的平均下行速率
+     * @return 下行速率，单位为字节/秒，未采样时返回{@link #RATE_UNKNOWN}
+     */
+    long getAverageDownloadRate() {
+        return averageDownloadRate;
+    }
+
+    /**
+     * 获取当前的传输状态
+     * @return 传输状态，空闲时为{@link StatusBarMgr#TRANSFER_UNKNOWN}
+     */
+    @StatusBarMgr.TransferState int getState() {
+        return state;
+    }
+
+    /**
+     * 获取距离下一次采样的时间
+     * @return 采样间隔，单位为毫秒
+     */
+    long getInterval() {
+        return interval;
+    }
+
+    private void push(long time, long txBytes, long rxBytes) {
+        ringHead = (ringHead + 1) % RING_SIZE;
+        ringTime[ringHead] = time;
+        ringTx[ringHead] = txBytes;
+        ringRx[ringHead] = rxBytes;
+        if (ringCount < RING_SIZE) {
+            ringCount++;
+        }
+    }
+
+    private void updateRate(long txRate, long rxRate) {
+        if (uploadRate == RATE_UNKNOWN) {
+            //第一个速率值直接作为初始值，避免从0开始缓慢爬升
+            emaTxRate = txRate;
+            emaRxRate = rxRate;
+        } else {
+            emaTxRate += EMA_ALPHA * (txRate - emaTxRate);
+            emaRxRate += EMA_ALPHA * (rxRate - emaRxRate);
+        }
+        uploadRate = Math.round(emaTxRate);
+        downloadRate = Math.round(emaRxRate);
+    }
+
+    private void updateAverageRate() {
+        if (ringCount < 2) {
+            return;
+        }
+        int oldest = (ringHead - ringCount + 1 + RING_SIZE) % RING_SIZE;
+        long elapsed = Math.max(1, ringTime[ringHead] - ringTime[oldest]);
+        averageUploadRate = Math.max(0, ringTx[ringHead] - ringTx[oldest]) * 1000 / elapsed;
+        averageDownloadRate = Math.max(0, ringRx[ringHead] - ringRx[oldest]) * 1000 / elapsed;
+    }
+
+    private boolean setState(@StatusBarMgr.TransferState int newState) {
+        if (state == newState) {
+            return false;
+        }
+        state = newState;
+        return true;
+    }
+}
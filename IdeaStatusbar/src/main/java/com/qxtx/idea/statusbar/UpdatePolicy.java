@@ -0,0 +1,93 @@
+package com.qxtx.idea.statusbar;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 16:02
+ * <p><b>Description</b></p> 事件源的更新策略，为每个事件源限制最小更新间隔，并进行后沿防抖。
+ * <pre>
+ *  · 最小间隔：同一事件源的两次更新，间隔不小于此值
+ *  · 防抖：事件到来后，等待一段静默时间再更新，期间新的事件会推迟更新时间
+ *  · 持续不断的事件不会无限推迟更新，一次合并最多等待“最小间隔+防抖时间”
+ *  · 时间均基于{@link android.os.SystemClock#uptimeMillis()}
+ * </pre>
+ */
+final class UpdatePolicy {
+
+    /** 事件源的数量，与{@link StatusBarMgr.UpdateSource}的取值一致 */
+    static final int SOURCE_COUNT = 7;
+
+    private final long[] minIntervalMs = new long[SOURCE_COUNT];
+    private final long[] debounceMs = new long[SOURCE_COUNT];
+
+    /** 最近一次执行更新的时间 */
+    private final long[] lastRunAt = new long[SOURCE_COUNT];
+    /** 当前这一批合并事件中，第一个事件的到来时间。小于0时表示没有等待中的更新 */
+    private final long[] burstStartAt = new long[SOURCE_COUNT];
+
+    UpdatePolicy() {
+        set(StatusBarMgr.SOURCE_SIM_SIGNAL, 1000, 200);
+        set(StatusBarMgr.SOURCE_SIM_SERVICE, 0, 100);
+        set(StatusBarMgr.SOURCE_NETWORK_TYPE, 300, 100);
+        set(StatusBarMgr.SOURCE_WIFI_RSSI, 2000, 300);
+        set(StatusBarMgr.SOURCE_BATTERY, 1000, 0);
+        set(StatusBarMgr.SOURCE_HEADSET, 0, 0);
+        set(StatusBarMgr.SOURCE_AIRPLANE, 0, 0);
+        reset();
+    }
+
+    /**
+     * 设置事件源的更新策略
+     * @param source        事件源
+     * @param minIntervalMs 最小更新间隔，单位为毫秒
+     * @param debounceMs    防抖时间，单位为毫秒
+     */
+    synchronized void set(int source, long minIntervalMs, long debounceMs) {
+        this.minIntervalMs[source] = Math.max(0, minIntervalMs);
+        this.debounceMs[source] = Math.max(0, debounceMs);
+    }
+
+    /**
+     * 一个新事件到来，计算更新应该执行的时间
+     * @param source 事件源
+     * @param now    当前时间
+     * @return 更新的执行时间
+     */
+    synchronized long schedule(int source, long now) {
+        if (burstStartAt[source] < 0) {
+            burstStartAt[source] = now;
+        }
+        long minInterval = minIntervalMs[source];
+        long debounce = debounceMs[source];
+
+        long at = Math.min(now + debounce, burstStartAt[source] + minInterval + debounce);
+        return Math.max(at, lastRunAt[source] + minInterval);
+    }
+
+    /**
+     * 更新被执行
+     * @param source 事件源
+     * @param now    当前时间
+     */
+    synchronized void onRun(int source, long now) {
+        lastRunAt[source] = now;
+        burstStartAt[source] = -1;
+    }
+
+    /**
+     * 等待中的更新被取消
+     * @param source 事件源
+     */
+    synchronized void cancel(int source) {
+        burstStartAt[source] = -1;
+    }
+
+    /**
+     * 清除所有事件源的运行记录，保留策略配置
+     */
+    synchronized void reset() {
+        for (int i = 0; i < SOURCE_COUNT; i++) {
+            lastRunAt[i] = Long.MIN_VALUE / 2;
+            burstStartAt[i] = -1;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.qxtx.idea.statusbar;
+
+import android.net.wifi.WifiManager;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 21:10
+ * <p><b>Description</b></p> wifi信号等级的跟踪器，缓存最近一次事件给出的rssi，在两次事件之间直接使用缓存值。
+ * <pre>
+ *  · rssi来自{@link WifiManager#RSSI_CHANGED_ACTION}广播，或安卓10及以上网络能力中的信号强度，不主动查询
+ *  · rssi到信号等级的换算使用预先计算的查找表，与{@link WifiManager#calculateSignalLevel(int, int)}的结果一致
+ *  · 查找表按最大信号等级生成，最大信号等级改变时才重新生成
+ *  · 线程安全
+ * </pre>
+ */
+final class WifiSignalTracker {
+
+    /** 与{@link WifiManager#calculateSignalLevel(int, int)}一致的rssi范围，低于下限为0级，不低于上限为最高级 */
+    private static final int MIN_RSSI = -100;
+    private static final int MAX_RSSI = -55;
+
+    /** 未知的rssi */
+    static final int RSSI_UNKNOWN = Integer.MIN_VALUE;
+
+    private volatile int rssi = RSSI_UNKNOWN;
+
+    /** 以(rssi - MIN_RSSI)为下标的信号等级查找表 */
+    private int[] levelTable = null;
+    private int maxLevel = -1;
+
+    /**
+     * 丢弃缓存的rssi，在断开wifi或停止监听时调用
+     */
+    void reset() {
+        rssi = RSSI_UNKNOWN;
+    }
+
+    /**
+     * 更新rssi
+     * @param newRssi 新的rssi，单位为dBm
+     * @return rssi是否改变
+     */
+    boolean setRssi(int newRssi) {
+        if (rssi == newRssi) {
+            return false;
+        }
+        rssi = newRssi;
+        return true;
+    }
+
+    /**
+     * 是否已经获得了rssi
+     * @return 是否已知
+     */
+    boolean hasRssi() {
+        return rssi != RSSI_UNKNOWN;
+    }
+
+    int getRssi() {
+        return rssi;
+    }
+
+    /**
+     * 获取当前的信号等级
+     * @param maxLevel 最大信号等级
+     * @return 信号等级，范围为[0,maxLevel]，rssi未知时返回0
+     */
+    synchronized int getLevel(int maxLevel) {
+        int curRssi = rssi;
+        if (curRssi == RSSI_UNKNOWN || maxLevel <= 0) {
+            return 0;
+        }
+        if (curRssi <= MIN_RSSI) {
+            return 0;
+        }
+        if (curRssi >= MAX_RSSI) {
+            return maxLevel;
+        }
+        if (this.maxLevel != maxLevel) {
+            levelTable = buildLevelTable(maxLevel);
+            this.maxLevel = maxLevel;
+        }
+        return levelTable[curRssi - MIN_RSSI];
+    }
+
+    private static int[] buildLevelTable(int maxLevel) {
+        int[] table = new int[MAX_RSSI - MIN_RSSI];
+        float inputRange = MAX_RSSI - MIN_RSSI;
+        for (int i = 1; i < table.length; i++) {
+            table[i] = (int) (i * maxLevel / inputRange);
+        }
+        return table;
+    }
+}
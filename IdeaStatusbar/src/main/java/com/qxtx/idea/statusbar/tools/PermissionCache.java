@@ -0,0 +1,123 @@
+package com.qxtx.idea.statusbar.tools;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 18:30
+ * <p><b>Description</b></p> 权限授予状态的缓存，避免在高频的事件回调中反复查询权限。
+ * <pre>
+ *  · 每个权限在第一次查询时检查一次，之后直接返回缓存的结果
+ *  · 调用{@link #refresh()}重新检查全部已缓存的权限，存在变化时通知{@link OnPermissionChangedListener}
+ *  · 应在权限可能改变的时机刷新，如activity的onResume()，或申请权限的结果回调中
+ *  · 线程安全
+ * </pre>
+ */
+public final class PermissionCache {
+
+    private static volatile PermissionCache instance;
+
+    private final Context context;
+
+    private final Map<String, Boolean> grantedMap = new ConcurrentHashMap<>();
+
+    private final CopyOnWriteArrayList<OnPermissionChangedListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 权限授予状态改变的监听器
+     */
+    public interface OnPermissionChangedListener {
+        /**
+         * 至少一个已缓存的权限的授予状态发生了改变
+         */
+        void onPermissionChanged();
+    }
+
+    private PermissionCache(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @param context the context
+     * @return the instance
+     */
+    public static PermissionCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (PermissionCache.class) {
+                if (instance == null) {
+                    instance = new PermissionCache(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 权限是否已被授予
+     * @param permission 权限名称
+     * @return 是否已授予
+     */
+    public boolean isGranted(String permission) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return true;
+        }
+        Boolean granted = grantedMap.get(permission);
+        if (granted == null) {
+            granted = check(permission);
+            grantedMap.put(permission, granted);
+        }
+        return granted;
+    }
+
+    /**
+     * 重新检查全部已缓存的权限
+     * @return 是否存在授予状态改变的权限
+     */
+    public boolean refresh() {
+        boolean changed = false;
+        for (Map.Entry<String, Boolean> entry : grantedMap.entrySet()) {
+            boolean granted = check(entry.getKey());
+            if (granted != entry.getValue()) {
+                entry.setValue(granted);
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            for (OnPermissionChangedListener listener : listeners) {
+                listener.onPermissionChanged();
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 添加权限授予状态改变的监听器
+     * @param listener 监听器
+     */
+    public void addOnPermissionChangedListener(OnPermissionChangedListener listener) {
+        if (listener != null) {
+            listeners.addIfAbsent(listener);
+        }
+    }
+
+    /**
+     * 移除权限授予状态改变的监听器
+     * @param listener 监听器
+     */
+    public void removeOnPermissionChangedListener(OnPermissionChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    private boolean check(String permission) {
+        return context.checkSelfPermission(permission) == PackageManager.PERMISSION_GRANTED;
+    }
+}
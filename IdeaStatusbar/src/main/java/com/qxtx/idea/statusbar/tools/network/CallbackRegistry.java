@@ -0,0 +1,157 @@
+package com.qxtx.idea.statusbar.tools.network;
+
+import com.qxtx.idea.statusbar.StatusBarLog;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 19:10
+ * <p><b>Description</b></p> 写时复制的回调注册表。
+ * <pre>
+ *  · 添加/移除时复制数组，分发时直接遍历当前数组的快照，分发过程中不加锁
+ *  · 相同的回调对象只会被添加一次
+ *  · 每个回调可以指定自己的{@link Executor}，为null时在分发线程中直接回调
+ *  · 分发期间被移除的回调，不会再收到尚未开始的回调
+ * </pre>
+ *
+ * @param <T> 回调类型
+ */
+final class CallbackRegistry<T> {
+
+    private static final Entry<?>[] EMPTY = new Entry<?>[0];
+
+    private final Object lock = new Object();
+
+    @SuppressWarnings("unchecked")
+    private volatile Entry<T>[] entries = (Entry<T>[]) EMPTY;
+
+    /**
+     * 添加回调
+     * @param callback 回调对象
+     * @param executor 执行回调的{@link Executor}，为null时在分发线程中直接回调
+     * @return 是否添加成功，已存在时返回false
+     */
+    boolean add(T callback, Executor executor) {
+        if (callback == null) {
+            return false;
+        }
+        synchronized (lock) {
+            Entry<T>[] old = entries;
+            if (indexOf(old, callback) >= 0) {
+                return false;
+            }
+            @SuppressWarnings("unchecked")
+            Entry<T>[] result = (Entry<T>[]) new Entry<?>[old.length + 1];
+            System.arraycopy(old, 0, result, 0, old.length);
+            result[old.length] = new Entry<>(callback, executor);
+            entries = result;
+            return true;
+        }
+    }
+
+    /**
+     * 移除回调
+     * @param callback 回调对象
+     * @return 是否移除成功，不存在时返回false
+     */
+    boolean remove(T callback) {
+        synchronized (lock) {
+            Entry<T>[] old = entries;
+            int index = indexOf(old, callback);
+            if (index < 0) {
+                return false;
+            }
+            old[index].removed = true;
+
+            @SuppressWarnings("unchecked")
+            Entry<T>[] result = (Entry<T>[]) new Entry<?>[old.length - 1];
+            System.arraycopy(old, 0, result, 0, index);
+            System.arraycopy(old, index + 1, result, index, old.length - index - 1);
+            entries = result;
+            return true;
+        }
+    }
+
+    /**
+     * 移除全部回调
+     */
+    void clear() {
+        synchronized (lock) {
+            for (Entry<T> entry : entries) {
+                entry.removed = true;
+            }
+            @SuppressWarnings("unchecked")
+            Entry<T>[] empty = (Entry<T>[]) EMPTY;
+            entries = empty;
+        }
+    }
+
+    boolean isEmpty() {
+        return entries.length == 0;
+    }
+
+    /**
+     * 向全部回调分发事件
+     * @param action 对每个回调执行的操作
+     */
+    void dispatch(Consumer<T> action) {
+        for (Entry<T> entry : entries) {
+            entry.dispatch(action);
+        }
+    }
+
+    /**
+     * 只向指定的回调分发事件，用于添加回调时的初始事件
+     * @param callback 回调对象
+     * @param action   执行的操作
+     */
+    void dispatchTo(T callback, Consumer<T> action) {
+        Entry<T>[] snapshot = entries;
+        int index = indexOf(snapshot, callback);
+        if (index >= 0) {
+            snapshot[index].dispatch(action);
+        }
+    }
+
+    private static <T> int indexOf(Entry<T>[] array, T callback) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i].callback.equals(callback)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Entry<T> {
+
+        private final T callback;
+        private final Executor executor;
+        private volatile boolean removed = false;
+
+        private Entry(T callback, Executor executor) {
+            this.callback = callback;
+            this.executor = executor;
+        }
+
+        private void dispatch(Consumer<T> action) {
+            if (executor == null) {
+                run(action);
+            } else {
+                executor.execute(() -> run(action));
+            }
+        }
+
+        private void run(Consumer<T> action) {
+            if (removed) {
+                return;
+            }
+            try {
+                action.accept(callback);
+            } catch (Exception e) {
+                StatusBarLog.e("网络回调执行异常：" + e.getMessage());
+            }
+        }
+    }
+}
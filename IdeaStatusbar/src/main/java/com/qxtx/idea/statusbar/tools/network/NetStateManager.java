@@ -3,7 +3,6 @@ package com.qxtx.idea.statusbar.tools.network;
 import android.Manifest;
 import android.app.Application;
 import android.content.Context;
-import android.content.pm.PackageManager;
 import android.net.ConnectivityManager;
 import android.net.ConnectivityManager.NetworkCallback;
 import android.net.LinkProperties;
@@ -15,13 +14,13 @@ import android.os.Build;
 import android.telephony.TelephonyManager;
 import android.util.Log;
 
+import com.qxtx.idea.statusbar.tools.PermissionCache;
+
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * @author QXTX-WORK
@@ -30,7 +29,12 @@ import java.util.List;
  * <pre>
  *   网络状态管理器。
  *   通过向此类注册/反注册网络状态监听器{@link INetworkCallback}，实现网络状态变化事件的回调/取消回调。
- *   注册的回调类之间相互独立。
+ *   注册的回调类之间相互独立。回调注册表为写时复制，分发时不加锁，每个回调可以指定执行的{@link Executor}。
+ *   网络类型和可用性的查询，由自身网络回调填充的网络信息表直接给出，不产生跨进程调用。
+ *   注意：网络信息表只在默认网络回调注册期间有效。没有注册任何默认网络回调（或普通网络回调）时，
+ *   静态查询方法仍然每次向系统查询；频繁查询时，应先添加一个回调以保持网络信息表有效。
+ *   移动网络的制式由使用方通过{@link #updateCellularNetworkType(int)}提供，不再为每个网络单独查询。
+ *   系统回调按类型延迟注册：添加第一个对应类型的回调时才注册，移除最后一个时反注册，不再需要时可调用{@link #release()}。
  *   在api23以上，必须动态注册广播接收器，才能够接收到android.net.conn.CONNECTIVITY_CHANGE消息。
  *   改为使用ConnectivityManager完成网络的监听
  *   需求：
@@ -43,7 +47,7 @@ public class NetStateManager {
     private static volatile NetStateManager instance;
 
     /**
-     * The interface Net type.
+     * The interface Net type. 取值连续（{@link #TYPE_UNKNOWN}除外），可以直接作为查找表的下标
      */
     @Retention(RetentionPolicy.SOURCE)
     public @interface NetType {
@@ -75,6 +79,18 @@ public class NetStateManager {
          * The constant TYPE_5G.
          */
         int TYPE_5G = 5;
+        /**
+         * 以太网
+         */
+        int TYPE_ETHERNET = 6;
+        /**
+         * 无法得知底层传输类型的VPN。底层传输类型已知时，使用底层网络的类型
+         */
+        int TYPE_VPN = 7;
+        /**
+         * 蓝牙共享网络
+         */
+        int TYPE_BLUETOOTH = 8;
     }
 
     /**
@@ -115,69 +131,47 @@ public class NetStateManager {
          * The constant NET_ETHERNET.
          */
         String NET_ETHERNET = "ETHERNET";
+        /**
+         * The constant NET_VPN.
+         */
+        String NET_VPN = "VPN";
+        /**
+         * The constant NET_BLUETOOTH.
+         */
+        String NET_BLUETOOTH = "BLUETOOTH";
     }
 
     private final Context mContext;
 
     private ConnectivityManager.OnNetworkActiveListener networkActiveListener;
-    private final List<ConnectivityManager.OnNetworkActiveListener> mDefNetworkCallbackActiveList;
+    private final CallbackRegistry<ConnectivityManager.OnNetworkActiveListener> mDefNetworkCallbackActiveList;
 
     private NetworkCallback mNetworkCallback;
-    private final List<INetworkCallback> mCallbackList;
+    private final CallbackRegistry<INetworkCallback> mCallbackList;
 
     private NetworkCallback mDefaultNetworkCallback;
-    private final List<INetworkCallback> mDefNetworkCallbackList;
+    private final CallbackRegistry<INetworkCallback> mDefNetworkCallbackList;
+
+    /** 网络信息表的实体，由网络回调更新 */
+    private final NetworkTable mTable;
+
+    /** 对外可用的网络信息表，只在默认网络回调注册期间有效 */
+    private volatile NetworkTable networkTable = null;
+
+    /** 系统回调的注册和反注册使用的锁 */
+    private final Object registrationLock = new Object();
 
     private NetStateManager(Context context) {
 
         mContext = context == null ? getContextMyself() : context.getApplicationContext();
 
-        mCallbackList = Collections.synchronizedList(new ArrayList<>());
-        mDefNetworkCallbackList = Collections.synchronizedList(new ArrayList<>());
-        mDefNetworkCallbackActiveList = Collections.synchronizedList(new ArrayList<>());
+        mCallbackList = new CallbackRegistry<>();
+        mDefNetworkCallbackList = new CallbackRegistry<>();
+        mDefNetworkCallbackActiveList = new CallbackRegistry<>();
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            if (mContext.checkSelfPermission(Manifest.permission.ACCESS_WIFI_STATE) != PackageManager.PERMISSION_GRANTED) {
-                LOG.E("异常！无法获得必要的权限：" + Manifest.permission.ACCESS_WIFI_STATE);
-                return;
-            }
-        }
+        mTable = new NetworkTable(mContext == null ? null : (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE));
 
-        try {
-            ConnectivityManager cm = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
-            if (cm != null) {
-                mNetworkCallback = new OnNetworkCallback(mCallbackList);
-                NetworkRequest.Builder builder = new NetworkRequest.Builder()
-//                        .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
-                        .addTransportType(NetworkCapabilities.TRANSPORT_CELLULAR)
-                        .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
-                        .addTransportType(NetworkCapabilities.TRANSPORT_BLUETOOTH)
-                        .addTransportType(NetworkCapabilities.TRANSPORT_VPN);
-
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                    builder.addTransportType(NetworkCapabilities.TRANSPORT_WIFI_AWARE);
-                }
-                cm.registerNetworkCallback(builder.build(), mNetworkCallback);
-
-                networkActiveListener = () -> {
-                    for (int i = 0; i < mDefNetworkCallbackActiveList.size(); i++) {
-                        ConnectivityManager.OnNetworkActiveListener listener = mDefNetworkCallbackActiveList.get(i);
-                        if (listener != null) {
-                            listener.onNetworkActive();
-                        }
-                    }
-                };
-                cm.addDefaultNetworkActiveListener(networkActiveListener);
-
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-                    mDefaultNetworkCallback = new OnNetworkCallback(mDefNetworkCallbackList);
-                    cm.registerDefaultNetworkCallback(mDefaultNetworkCallback);
-                }
-            }
-        } catch (Exception e) {
-            LOG.E("网络监听异常! " + e.getMessage());
-            e.printStackTrace();
-        }
+        //系统回调在添加第一个对应类型的回调时才注册，见updateRegistration()
     }
 
     /**
@@ -199,9 +193,12 @@ public class NetStateManager {
 
     /**
      * Gets instance.
+     * 未创建实例时，需要反射ActivityThread获得Application，应优先使用{@link #getInstance(Context)}
      *
      * @return the instance
+     * @deprecated 使用{@link #getInstance(Context)}
      */
+    @Deprecated
     public static NetStateManager getInstance() {
         if (instance ==  null) {
             synchronized (NetStateManager.class) {
@@ -214,37 +211,34 @@ public class NetStateManager {
     }
 
     /**
-     * 添加网络变更事件回调，以处理受网络变更影响的业务。
+     * 添加网络变更事件回调，以处理受网络变更影响的业务。回调在系统的网络回调线程中执行
      *
      * @param callback the callback
+     * @see #addNetworkCallback(INetworkCallback, Executor) #addNetworkCallback(INetworkCallback, Executor)
      * @see #removeNetworkCallback(INetworkCallback) #removeNetworkCallback(INetworkCallback)
      * @see #addDefNetworkCallback(INetworkCallback) #addDefNetworkCallback(INetworkCallback)
      */
     public void addNetworkCallback(INetworkCallback callback) {
+        addNetworkCallback(callback, null);
+    }
+
+    /**
+     * 添加网络变更事件回调，以处理受网络变更影响的业务。相同的回调只会被添加一次
+     *
+     * @param callback the callback
+     * @param executor 执行回调的{@link Executor}，为null时在系统的网络回调线程中执行
+     * @see #removeNetworkCallback(INetworkCallback) #removeNetworkCallback(INetworkCallback)
+     */
+    public void addNetworkCallback(INetworkCallback callback, Executor executor) {
         if (callback == null) {
-            mCallbackList.remove(null);
             return;
         }
-        if (mCallbackList.contains(callback)) {
-            return ;
-        }
-        boolean ret = mCallbackList.add(callback);
-        if (!ret) {
-            LOG.E("添加网络状态监听器失败了");
-        } else {
-            //laiyx 2022/1/5 14:51 总是触发一次网络事件，作为初始事件
-            if (isNetworkAvailable()) {
-                ConnectivityManager cm = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
-                Network network = null;
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    network = cm.getActiveNetwork();
-                }
-                callback.onAvailable(network);
-                callback.onCapabilitiesChanged(network, cm.getNetworkCapabilities(network));
-            } else {
-                callback.onUnavailable();
-            }
+        if (!mCallbackList.add(callback, executor)) {
+            return;
         }
+        updateRegistration();
+        //laiyx 2022/1/5 14:51 总是触发一次网络事件，作为初始事件
+        dispatchInitialEvent(mCallbackList, callback);
     }
 
     /**
@@ -254,37 +248,39 @@ public class NetStateManager {
      * @see #addNetworkCallback(INetworkCallback) #addNetworkCallback(INetworkCallback)
      */
     public void removeNetworkCallback(INetworkCallback callback) {
-        mCallbackList.remove(callback);
+        if (mCallbackList.remove(callback)) {
+            updateRegistration();
+        }
     }
 
     /**
-     * 添加一个对默认网络的状态改变事件回调，以处理受网络变更影响的业务。
+     * 添加一个对默认网络的状态改变事件回调，以处理受网络变更影响的业务。回调在系统的网络回调线程中执行
      *
      * @param callback 回调对象
+     * @see #addDefNetworkCallback(INetworkCallback, Executor) #addDefNetworkCallback(INetworkCallback, Executor)
      * @see #addNetworkCallback(INetworkCallback) #addNetworkCallback(INetworkCallback)
      */
     public void addDefNetworkCallback(INetworkCallback callback) {
+        addDefNetworkCallback(callback, null);
+    }
+
+    /**
+     * 添加一个对默认网络的状态改变事件回调，以处理受网络变更影响的业务。相同的回调只会被添加一次
+     *
+     * @param callback 回调对象
+     * @param executor 执行回调的{@link Executor}，为null时在系统的网络回调线程中执行
+     * @see #removeDefNetworkCallback(INetworkCallback) #removeDefNetworkCallback(INetworkCallback)
+     */
+    public void addDefNetworkCallback(INetworkCallback callback, Executor executor) {
         if (callback == null) {
-            mDefNetworkCallbackList.remove(null);
             return;
         }
-        if (mDefNetworkCallbackList.contains(callback)) {
+        if (!mDefNetworkCallbackList.add(callback, executor)) {
             return;
         }
-        mDefNetworkCallbackList.add(callback);
-
+        updateRegistration();
         //laiyx 2022/1/5 14:51 总是触发一次网络事件，作为初始事件
-        if (isNetworkAvailable()) {
-            ConnectivityManager cm = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
-            Network network = null;
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                network = cm.getActiveNetwork();
-            }
-            callback.onAvailable(network);
-            callback.onCapabilitiesChanged(network, cm.getNetworkCapabilities(network));
-        } else {
-            callback.onUnavailable();
-        }
+        dispatchInitialEvent(mDefNetworkCallbackList, callback);
     }
 
     /**
@@ -294,7 +290,68 @@ public class NetStateManager {
      * @see #addDefNetworkCallback(INetworkCallback) #addDefNetworkCallback(INetworkCallback)
      */
     public void removeDefNetworkCallback(INetworkCallback callback) {
-        mDefNetworkCallbackList.remove(callback);
+        if (mDefNetworkCallbackList.remove(callback)) {
+            updateRegistration();
+        }
+    }
+
+    /**
+     * 重新解析移动网络的网络类型。移动网络的制式改变（如4G到3G）时，网络能力不一定会改变，
+     * 因此在得知制式可能改变，又无法得知新的制式时，需要调用此方法。
+     * 每个移动网络都会产生一次跨进程调用，已知新的制式时，应调用{@link #updateCellularNetworkType(int)}
+     *
+     * @return 是否存在网络类型改变的移动网络
+     */
+    public boolean refreshCellularNetworkType() {
+        NetworkTable table = networkTable;
+        return table != null && table.refreshCellular();
+    }
+
+    /**
+     * 更新移动数据网络的制式，并据此重新计算网络信息表中移动网络的网络类型，不产生跨进程调用。
+     * 制式可从数据卡的{@link android.telephony.ServiceState}或{@link android.telephony.TelephonyDisplayInfo}得知
+     *
+     * @param networkType 数据网络的制式，取值见{@link TelephonyManager#NETWORK_TYPE_LTE}等常量。
+     *                    为{@link TelephonyManager#NETWORK_TYPE_UNKNOWN}时，之后回退为向系统查询
+     * @return 是否存在网络类型改变的移动网络
+     */
+    public boolean updateCellularNetworkType(int networkType) {
+        NetworkTable table = networkTable;
+        return table != null && table.setCellularNetworkType(networkType);
+    }
+
+    /** 向新添加的回调发送一次当前的网络状态 */
+    private void dispatchInitialEvent(CallbackRegistry<INetworkCallback> registry, INetworkCallback callback) {
+        NetworkTable table = networkTable;
+        if (table != null) {
+            Network network = table.getDefaultNetwork();
+            NetworkTable.Record record = table.get(network);
+            if (network != null && record != null) {
+                registry.dispatchTo(callback, c -> {
+                    c.onAvailable(network);
+                    c.onCapabilitiesChanged(network, record.capabilities);
+                });
+            } else {
+                registry.dispatchTo(callback, INetworkCallback::onUnavailable);
+            }
+            return;
+        }
+
+        if (isNetworkAvailable()) {
+            ConnectivityManager cm = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+            Network network = null;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                network = cm.getActiveNetwork();
+            }
+            NetworkCapabilities capabilities = cm.getNetworkCapabilities(network);
+            Network available = network;
+            registry.dispatchTo(callback, c -> {
+                c.onAvailable(available);
+                c.onCapabilitiesChanged(available, capabilities);
+            });
+        } else {
+            registry.dispatchTo(callback, INetworkCallback::onUnavailable);
+        }
     }
 
     /**
@@ -304,13 +361,12 @@ public class NetStateManager {
      */
     public void addDefNetworkActiveCallback(ConnectivityManager.OnNetworkActiveListener listener) {
         if (listener == null) {
-            mDefNetworkCallbackActiveList.remove(null);
             return;
         }
-        if (mDefNetworkCallbackActiveList.contains(listener)) {
+        if (!mDefNetworkCallbackActiveList.add(listener, null)) {
             return;
         }
-        mDefNetworkCallbackActiveList.add(listener);
+        updateRegistration();
 
         //laiyx 2022/1/5 14:53 触发初始事件
         if (isNetworkAvailable()) {
@@ -324,20 +380,121 @@ public class NetStateManager {
      * @param listener 回调对象
      */
     public void removeDefNetworkActiveCallback(ConnectivityManager.OnNetworkActiveListener listener) {
-        mDefNetworkCallbackActiveList.remove(listener);
+        if (mDefNetworkCallbackActiveList.remove(listener)) {
+            updateRegistration();
+        }
+    }
+
+    /**
+     * 释放：移除全部回调，并反注册全部系统回调。之后再次调用{@link #getInstance(Context)}将创建新的实例
+     */
+    public void release() {
+        synchronized (NetStateManager.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+        mCallbackList.clear();
+        mDefNetworkCallbackList.clear();
+        mDefNetworkCallbackActiveList.clear();
+        updateRegistration();
     }
 
     /**
-     * 检查网络是否可用，但网络可用不代表可以联网
+     * 按回调类型，使系统回调的注册状态与当前的回调保持一致：添加第一个回调时注册，移除最后一个回调时反注册。
+     * 网络信息表依赖默认网络回调，因此存在任一网络回调时，都会注册默认网络回调
+     */
+    private void updateRegistration() {
+        ConnectivityManager cm = mContext == null ? null : (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) {
+            return;
+        }
+
+        synchronized (registrationLock) {
+            boolean needNetwork = !mCallbackList.isEmpty();
+            boolean needDefault = needNetwork || !mDefNetworkCallbackList.isEmpty();
+            boolean needActive = !mDefNetworkCallbackActiveList.isEmpty();
+
+            if (needNetwork || needDefault || needActive) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                    if (!PermissionCache.getInstance(mContext).isGranted(Manifest.permission.ACCESS_WIFI_STATE)) {
+                        LOG.E("异常！无法获得必要的权限：" + Manifest.permission.ACCESS_WIFI_STATE);
+                        needNetwork = needDefault = needActive = false;
+                    }
+                }
+            }
+
+            try {
+                //先注册默认网络回调，使网络信息表在普通网络回调的第一个事件之前就绪
+                if (needDefault && mDefaultNetworkCallback == null) {
+                    //先以当前状态初始化网络信息表，之后由网络回调更新
+                    mTable.seed();
+                    mDefaultNetworkCallback = new OnNetworkCallback(mDefNetworkCallbackList, mTable, true);
+                    cm.registerDefaultNetworkCallback(mDefaultNetworkCallback);
+                    //默认网络的变化只能通过默认网络回调得知
+                    networkTable = mTable;
+                    LOG.D("注册默认网络回调");
+                }
+
+                if (needNetwork && mNetworkCallback == null) {
+                    mNetworkCallback = new OnNetworkCallback(mCallbackList, mTable, false);
+                    //只关心可以联网，且能够被解析为网络类型的传输类型。VPN的变化由默认网络回调给出
+                    NetworkRequest.Builder builder = new NetworkRequest.Builder()
+                            .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                            .addTransportType(NetworkCapabilities.TRANSPORT_CELLULAR)
+                            .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
+                            .addTransportType(NetworkCapabilities.TRANSPORT_ETHERNET)
+                            .addTransportType(NetworkCapabilities.TRANSPORT_BLUETOOTH);
+                    cm.registerNetworkCallback(builder.build(), mNetworkCallback);
+                    mTable.setTrackingAll(true);
+                    LOG.D("注册网络回调");
+                } else if (!needNetwork && mNetworkCallback != null) {
+                    cm.unregisterNetworkCallback(mNetworkCallback);
+                    mNetworkCallback = null;
+                    mTable.setTrackingAll(false);
+                    LOG.D("反注册网络回调");
+                }
+
+                if (!needDefault && mDefaultNetworkCallback != null) {
+                    networkTable = null;
+                    cm.unregisterNetworkCallback(mDefaultNetworkCallback);
+                    mDefaultNetworkCallback = null;
+                    mTable.clear();
+                    LOG.D("反注册默认网络回调");
+                }
+
+                if (needActive && networkActiveListener == null) {
+                    networkActiveListener = () -> mDefNetworkCallbackActiveList.dispatch(ConnectivityManager.OnNetworkActiveListener::onNetworkActive);
+                    cm.addDefaultNetworkActiveListener(networkActiveListener);
+                    LOG.D("注册默认网络活跃监听");
+                } else if (!needActive && networkActiveListener != null) {
+                    cm.removeDefaultNetworkActiveListener(networkActiveListener);
+                    networkActiveListener = null;
+                    LOG.D("反注册默认网络活跃监听");
+                }
+            } catch (Exception e) {
+                LOG.E("网络监听异常! " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 检查网络是否可用，但网络可用不代表可以联网。只在默认网络回调注册期间由网络信息表给出，否则向系统查询
      * @return the boolean
      */
     public boolean isNetworkAvailable() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            if (mContext.checkSelfPermission(Manifest.permission.ACCESS_WIFI_STATE) != PackageManager.PERMISSION_GRANTED) {
+            if (!PermissionCache.getInstance(mContext).isGranted(Manifest.permission.ACCESS_WIFI_STATE)) {
                 return false;
             }
         }
 
+        NetworkTable table = networkTable;
+        if (table != null) {
+            return table.getDefaultNetwork() != null;
+        }
+
         ConnectivityManager cm = (ConnectivityManager)mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
         if (cm == null) {
             return false;
@@ -363,6 +520,12 @@ public class NetStateManager {
                 return NetworkName.NET_4G;
             case NetType.TYPE_5G:
                 return NetworkName.NET_5G;
+            case NetType.TYPE_ETHERNET:
+                return NetworkName.NET_ETHERNET;
+            case NetType.TYPE_VPN:
+                return NetworkName.NET_VPN;
+            case NetType.TYPE_BLUETOOTH:
+                return NetworkName.NET_BLUETOOTH;
             default:
                 return NetworkName.NET_UNKNOWN;
         }
@@ -396,7 +559,7 @@ public class NetStateManager {
     }
 
     /**
-     * 获取当前网络类型
+     * 获取当前网络类型。只在默认网络回调注册期间由网络信息表给出，否则向系统查询
      * @param context the context
      *
      * @return the cur network type
@@ -406,12 +569,24 @@ public class NetStateManager {
             return NetType.TYPE_UNKNOWN;
         }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            if (context.checkSelfPermission(Manifest.permission.ACCESS_WIFI_STATE) != PackageManager.PERMISSION_GRANTED) {
+            if (!PermissionCache.getInstance(context).isGranted(Manifest.permission.ACCESS_WIFI_STATE)) {
                 LOG.E("缺少权限：" + Manifest.permission.ACCESS_WIFI_STATE);
                 return NetType.TYPE_UNKNOWN;
             }
         }
 
+        NetworkTable table = getNetworkTable();
+        if (table != null) {
+            Network network = table.getDefaultNetwork();
+            if (network == null) {
+                return NetType.TYPE_NONE;
+            }
+            NetworkTable.Record record = table.get(network);
+            if (record != null) {
+                return record.netType;
+            }
+        }
+
         ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
         if (cm == null) {
             return NetType.TYPE_NONE;
@@ -425,7 +600,7 @@ public class NetStateManager {
     }
 
     /**
-     * 获取当前网络类型
+     * 获取当前网络类型。只在网络回调注册期间，且网络已被记录时由网络信息表给出，否则向系统查询
      * @param context the context
      *
      * @param network the network
@@ -439,6 +614,12 @@ public class NetStateManager {
             return NetType.TYPE_NONE;
         }
 
+        NetworkTable table = getNetworkTable();
+        NetworkTable.Record record = table == null ? null : table.get(network);
+        if (record != null) {
+            return record.netType;
+        }
+
         ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
         if (cm == null) {
             return NetType.TYPE_NONE;
@@ -446,6 +627,12 @@ public class NetStateManager {
         return getNetWorkType(cm.getNetworkInfo(network));
     }
 
+    /** 获取已就绪的网络信息表，不会创建单例 */
+    private static NetworkTable getNetworkTable() {
+        NetStateManager manager = instance;
+        return manager == null ? null : manager.networkTable;
+    }
+
     /**
      * 将移动网络制式转换成可读性的网络类型等效值{@link NetType}
      *
@@ -460,57 +647,74 @@ public class NetStateManager {
         int type = info.getType();
         if (type == ConnectivityManager.TYPE_WIFI) {
             return NetType.TYPE_WIFI;
+        } else if (type == ConnectivityManager.TYPE_ETHERNET) {
+            return NetType.TYPE_ETHERNET;
+        } else if (type == ConnectivityManager.TYPE_BLUETOOTH) {
+            return NetType.TYPE_BLUETOOTH;
+        } else if (type == ConnectivityManager.TYPE_VPN) {
+            return NetType.TYPE_VPN;
         } else {
-            int subType = info.getSubtype();
-            String subTypeName = info.getSubtypeName();
-            int netType = NetType.TYPE_UNKNOWN;
-            switch (subType) {
-                case TelephonyManager.NETWORK_TYPE_GPRS:
-                case TelephonyManager.NETWORK_TYPE_CDMA:
-                case TelephonyManager.NETWORK_TYPE_EDGE:
-                case TelephonyManager.NETWORK_TYPE_1xRTT:
-                case TelephonyManager.NETWORK_TYPE_IDEN:
-                    netType = NetType.TYPE_2G;
-                    break;
-                case TelephonyManager.NETWORK_TYPE_EVDO_A: // 电信3g
-                case TelephonyManager.NETWORK_TYPE_UMTS:
-                case TelephonyManager.NETWORK_TYPE_EVDO_0:
-                case TelephonyManager.NETWORK_TYPE_HSDPA:
-                case TelephonyManager.NETWORK_TYPE_HSUPA:
-                case TelephonyManager.NETWORK_TYPE_HSPA:
-                case TelephonyManager.NETWORK_TYPE_EVDO_B:
-                case TelephonyManager.NETWORK_TYPE_EHRPD:
-                case TelephonyManager.NETWORK_TYPE_HSPAP:
-                    netType = NetType.TYPE_3G;
-                    break;
-                case TelephonyManager.NETWORK_TYPE_LTE:
-                    netType = NetType.TYPE_4G;
-                    break;
-                default:
-                    //sdk29及以上才会有这个常量
-                    if (Build.VERSION.SDK_INT > Build.VERSION_CODES.P) {
-                        if (subType == TelephonyManager.NETWORK_TYPE_NR) {
-                            netType = NetType.TYPE_5G;
-                            break;
-                        }
-                    }
+            return getNetTypeBySubType(info.getSubtype(), info.getSubtypeName());
+        }
+    }
 
-                    if (subTypeName.equalsIgnoreCase("TD-SCDMA")
-                            || subTypeName.equalsIgnoreCase("WCDMA")
-                            || subTypeName.equalsIgnoreCase("CDMA2000")) {
-                        netType = NetType.TYPE_3G;
-                    } else if (subTypeName.contains("LTE")) {
-                        netType = NetType.TYPE_4G;
-                    } else if (subTypeName.contains("NR")) {
+    /**
+     * 将移动网络制式转换成可读性的网络类型等效值{@link NetType}
+     *
+     * @param subType     移动网络制式，取值见{@link TelephonyManager#NETWORK_TYPE_LTE}等常量
+     * @param subTypeName 制式名称，用于识别厂商定义的制式，可以为null
+     * @return 网络类型
+     */
+    public static @NetType int getNetTypeBySubType(int subType, String subTypeName) {
+        int netType = NetType.TYPE_UNKNOWN;
+        switch (subType) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                netType = NetType.TYPE_2G;
+                break;
+            case TelephonyManager.NETWORK_TYPE_EVDO_A: // 电信3g
+            case TelephonyManager.NETWORK_TYPE_UMTS:
+            case TelephonyManager.NETWORK_TYPE_EVDO_0:
+            case TelephonyManager.NETWORK_TYPE_HSDPA:
+            case TelephonyManager.NETWORK_TYPE_HSUPA:
+            case TelephonyManager.NETWORK_TYPE_HSPA:
+            case TelephonyManager.NETWORK_TYPE_EVDO_B:
+            case TelephonyManager.NETWORK_TYPE_EHRPD:
+            case TelephonyManager.NETWORK_TYPE_HSPAP:
+                netType = NetType.TYPE_3G;
+                break;
+            case TelephonyManager.NETWORK_TYPE_LTE:
+                netType = NetType.TYPE_4G;
+                break;
+            default:
+                //sdk29及以上才会有这个常量
+                if (Build.VERSION.SDK_INT > Build.VERSION_CODES.P) {
+                    if (subType == TelephonyManager.NETWORK_TYPE_NR) {
                         netType = NetType.TYPE_5G;
-                    } else {
-                        LOG.I("Unknown network type: " + netType);
-                        netType = NetType.TYPE_UNKNOWN;
+                        break;
                     }
-                    break;
-            }
-            return netType;
+                }
+
+                if (subTypeName == null) {
+                    netType = NetType.TYPE_UNKNOWN;
+                } else if (subTypeName.equalsIgnoreCase("TD-SCDMA")
+                        || subTypeName.equalsIgnoreCase("WCDMA")
+                        || subTypeName.equalsIgnoreCase("CDMA2000")) {
+                    netType = NetType.TYPE_3G;
+                } else if (subTypeName.contains("LTE")) {
+                    netType = NetType.TYPE_4G;
+                } else if (subTypeName.contains("NR")) {
+                    netType = NetType.TYPE_5G;
+                } else {
+                    LOG.I("Unknown network type: " + netType);
+                    netType = NetType.TYPE_UNKNOWN;
+                }
+                break;
         }
+        return netType;
     }
 
     private static Context getContextMyself() {
@@ -543,15 +747,25 @@ public class NetStateManager {
 
     private static final class OnNetworkCallback extends NetworkCallback {
 
-        private final List<INetworkCallback> list;
+        private final CallbackRegistry<INetworkCallback> registry;
+
+        /** 网络信息表，在分发之前更新，使回调中的查询得到最新的结果 */
+        private final NetworkTable table;
+
+        /** 是否为系统默认网络的回调 */
+        private final boolean isDefault;
 
         /**
          * Instantiates a new On network callback.
          *
-         * @param list the list
+         * @param registry  the registry
+         * @param table     网络信息表
+         * @param isDefault 是否为系统默认网络的回调
          */
-        public OnNetworkCallback(List<INetworkCallback> list) {
-            this.list = list;
+        public OnNetworkCallback(CallbackRegistry<INetworkCallback> registry, NetworkTable table, boolean isDefault) {
+            this.registry = registry;
+            this.table = table;
+            this.isDefault = isDefault;
         }
 
         @Override
@@ -559,20 +773,11 @@ public class NetStateManager {
             super.onAvailable(network);
 
             LOG.D("Network available.");
-
-            for (int i = 0; i < list.size(); ) {
-                INetworkCallback callback = list.get(i);
-                try {
-                    callback.onAvailable(network);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                if (!list.contains(callback)) {
-                    //保持不变，因为已经被移除
-                    continue;
-                }
-                i++;
+            if (isDefault) {
+                table.onDefaultAvailable(network);
             }
+
+            registry.dispatch(callback -> callback.onAvailable(network));
         }
 
         @Override
@@ -581,19 +786,7 @@ public class NetStateManager {
 
             LOG.D("Network losing! tryToHoldMs=" + maxMsToLive);
 
-            for (int i = 0; i < list.size(); ) {
-                INetworkCallback callback = list.get(i);
-                try {
-                    callback.onLosing(network, maxMsToLive);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                if (!list.contains(callback)) {
-                    //保持不变，因为已经被移除
-                    continue;
-                }
-                i++;
-            }
+            registry.dispatch(callback -> callback.onLosing(network, maxMsToLive));
         }
 
         @Override
@@ -601,20 +794,13 @@ public class NetStateManager {
             super.onLost(network);
 
             LOG.D("Network lost.");
-
-            for (int i = 0; i < list.size(); ) {
-                INetworkCallback callback = list.get(i);
-                try {
-                    callback.onLost(network);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                if (!list.contains(callback)) {
-                    //保持不变，因为已经被移除
-                    continue;
-                }
-                i++;
+            if (isDefault) {
+                table.onDefaultLost(network);
+            } else {
+                table.onLost(network);
             }
+
+            registry.dispatch(callback -> callback.onLost(network));
         }
 
         @Override
@@ -640,38 +826,18 @@ public class NetStateManager {
             LOG.D("onCapabilitiesChanged(). type=" + transport
                     + ",downstreamBandwidth=" + networkCapabilities.getLinkDownstreamBandwidthKbps() + "Kbps"
                     + ",upstreamBandwidth=" + networkCapabilities.getLinkUpstreamBandwidthKbps() + "Kbps");
+            table.onCapabilitiesChanged(network, networkCapabilities);
 
-            for (int i = 0; i < list.size();) {
-                INetworkCallback callback = list.get(i);
-                try {
-                    callback.onCapabilitiesChanged(network, networkCapabilities);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                if (!list.contains(callback)) {
-                    //保持不变，因为已经被移除
-                    continue;
-                }
-                i++;
-            }
+            registry.dispatch(callback -> callback.onCapabilitiesChanged(network, networkCapabilities));
         }
 
         @Override
         public void onLinkPropertiesChanged(Network network, LinkProperties linkProperties) {
             super.onLinkPropertiesChanged(network, linkProperties);
             LOG.D("onLinkPropertiesChanged().");
+            table.onLinkPropertiesChanged(network, linkProperties);
 
-            for (int i = 0; i < list.size();) {
-                INetworkCallback callback = list.get(i);
-                if (callback != null) {
-                    callback.onLinkPropertiesChanged(network, linkProperties);
-                }
-                if (!list.contains(callback)) {
-                    //保持不变，因为已经被移除
-                    continue;
-                }
-                i++;
-            }
+            registry.dispatch(callback -> callback.onLinkPropertiesChanged(network, linkProperties));
         }
     }
 
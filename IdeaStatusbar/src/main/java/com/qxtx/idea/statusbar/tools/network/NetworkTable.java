@@ -0,0 +1,278 @@
+package com.qxtx.idea.statusbar.tools.network;
+
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.telephony.TelephonyManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 19:40
+ * <p><b>Description</b></p> 网络信息表，以{@link Network}为键，记录每个网络的能力、链路属性和网络类型。
+ * <pre>
+ *  · 由{@link NetStateManager}自身的网络回调填充，查询时不产生跨进程调用
+ *  · 网络类型只在网络能力改变，或者外部要求重新解析移动网络时才会解析
+ *  · 移动网络的制式由外部提供（来自数据卡的服务状态），只在制式未知时才向系统查询
+ *  · 记录对象不可变，更新时整体替换
+ *  · 线程安全
+ * </pre>
+ */
+final class NetworkTable {
+
+    private final ConnectivityManager cm;
+
+    private final ConcurrentHashMap<Network, Record> records = new ConcurrentHashMap<>();
+
+    /** 系统默认网络，为null时表示无可用网络 */
+    private volatile Network defaultNetwork = null;
+
+    /**
+     * 普通网络回调是否已注册。未注册时，记录只由默认网络回调维护，默认网络丢失时需要移除其记录。
+     * 已注册时，普通网络回调的请求未覆盖的网络（如VPN）同样只由默认网络回调维护
+     */
+    private volatile boolean trackingAll = false;
+
+    /** 移动数据网络的制式，由外部提供，取值见TelephonyManager.NETWORK_TYPE_XXX */
+    private volatile int cellularNetworkType = TelephonyManager.NETWORK_TYPE_UNKNOWN;
+
+    NetworkTable(ConnectivityManager cm) {
+        this.cm = cm;
+    }
+
+    /**
+     * 以当前的系统状态初始化，在注册默认网络回调之前调用
+     */
+    void seed() {
+        Network network = cm.getActiveNetwork();
+        if (network != null) {
+            NetworkCapabilities capabilities = cm.getNetworkCapabilities(network);
+            if (capabilities != null) {
+                onCapabilitiesChanged(network, capabilities);
+                onLinkPropertiesChanged(network, cm.getLinkProperties(network));
+            }
+        }
+        defaultNetwork = network;
+    }
+
+    /**
+     * 清空全部记录，在网络回调反注册后调用。记录在回调反注册后不再更新，不应继续使用
+     */
+    void clear() {
+        records.clear();
+        defaultNetwork = null;
+        cellularNetworkType = TelephonyManager.NETWORK_TYPE_UNKNOWN;
+    }
+
+    /**
+     * 系统默认网络改变
+     * @param network 新的默认网络
+     */
+    void onDefaultAvailable(Network network) {
+        defaultNetwork = network;
+    }
+
+    /**
+     * 设置普通网络回调是否已注册。反注册后，只保留默认网络的记录，其它记录不再更新
+     * @param trackingAll 是否已注册
+     */
+    void setTrackingAll(boolean trackingAll) {
+        this.trackingAll = trackingAll;
+        if (!trackingAll) {
+            Network network = defaultNetwork;
+            records.keySet().removeIf(key -> !key.equals(network));
+        }
+    }
+
+    /**
+     * 系统默认网络丢失。该网络不由普通网络回调维护时，同时移除其记录，避免不再是默认网络的记录一直残留
+     * @param network 丢失的网络
+     */
+    void onDefaultLost(Network network) {
+        if (network == null) {
+            return;
+        }
+        if (network.equals(defaultNetwork)) {
+            defaultNetwork = null;
+        }
+        Record record = records.get(network);
+        if (record != null && !(trackingAll && isTrackedByGeneralRequest(record))) {
+            records.remove(network);
+        }
+    }
+
+    void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+        if (network == null || capabilities == null) {
+            return;
+        }
+        Record old = records.get(network);
+        LinkProperties link = old == null ? null : old.linkProperties;
+        records.put(network, new Record(capabilities, link, resolveTransport(capabilities), resolveNetType(network, capabilities, old)));
+    }
+
+    void onLinkPropertiesChanged(Network network, LinkProperties linkProperties) {
+        Record old = network == null ? null : records.get(network);
+        if (old == null) {
+            return;
+        }
+        records.put(network, new Record(old.capabilities, linkProperties, old.transport, old.netType));
+    }
+
+    void onLost(Network network) {
+        if (network != null) {
+            records.remove(network);
+        }
+    }
+
+    /**
+     * 重新解析全部移动网络的网络类型。移动网络的制式改变（如4G到3G）时，网络能力不一定会改变
+     * @return 是否存在网络类型改变的移动网络
+     */
+    boolean refreshCellular() {
+        boolean changed = false;
+        for (Map.Entry<Network, Record> entry : records.entrySet()) {
+            Record old = entry.getValue();
+            if (old.transport != NetworkCapabilities.TRANSPORT_CELLULAR) {
+                continue;
+            }
+            int netType = queryCellularNetType(entry.getKey());
+            if (netType != old.netType) {
+                entry.setValue(new Record(old.capabilities, old.linkProperties, old.transport, netType));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 设置移动数据网络的制式，并据此重新计算全部移动网络的网络类型，不产生跨进程调用
+     * @param networkType 移动数据网络的制式，为TelephonyManager.NETWORK_TYPE_UNKNOWN时，之后回退为向系统查询
+     * @return 是否存在网络类型改变的移动网络
+     */
+    boolean setCellularNetworkType(int networkType) {
+        cellularNetworkType = networkType;
+        if (networkType == TelephonyManager.NETWORK_TYPE_UNKNOWN) {
+            return false;
+        }
+        int netType = NetStateManager.getNetTypeBySubType(networkType, null);
+        boolean changed = false;
+        for (Map.Entry<Network, Record> entry : records.entrySet()) {
+            Record old = entry.getValue();
+            if (old.transport == NetworkCapabilities.TRANSPORT_CELLULAR && netType != old.netType) {
+                entry.setValue(new Record(old.capabilities, old.linkProperties, old.transport, netType));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 获取系统默认网络
+     * @return 默认网络，无可用网络时返回null
+     */
+    Network getDefaultNetwork() {
+        return defaultNetwork;
+    }
+
+    /**
+     * 获取网络的记录
+     * @param network 网络
+     * @return 网络记录，未记录时返回null
+     */
+    Record get(Network network) {
+        return network == null ? null : records.get(network);
+    }
+
+    /**
+     * 网络是否被普通网络回调的请求覆盖。请求只包含蜂窝、wifi、以太网和蓝牙，不包含VPN
+     */
+    private static boolean isTrackedByGeneralRequest(Record record) {
+        if (record.capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN)) {
+            return false;
+        }
+        switch (record.transport) {
+            case NetworkCapabilities.TRANSPORT_CELLULAR:
+            case NetworkCapabilities.TRANSPORT_WIFI:
+            case NetworkCapabilities.TRANSPORT_ETHERNET:
+            case NetworkCapabilities.TRANSPORT_BLUETOOTH:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int resolveTransport(NetworkCapabilities capabilities) {
+        //优先wifi网络
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+            return NetworkCapabilities.TRANSPORT_WIFI;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+            return NetworkCapabilities.TRANSPORT_CELLULAR;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+            return NetworkCapabilities.TRANSPORT_ETHERNET;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN)) {
+            return NetworkCapabilities.TRANSPORT_VPN;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_BLUETOOTH)) {
+            return NetworkCapabilities.TRANSPORT_BLUETOOTH;
+        }
+        return NetStateManager.NetType.TYPE_UNKNOWN;
+    }
+
+    /**
+     * 由传输类型解析网络类型。VPN的网络能力中带有底层网络的传输类型时，使用底层网络的类型。
+     * 移动网络优先使用外部提供的制式，其次沿用旧记录的类型，都没有时才向系统查询
+     */
+    private @NetStateManager.NetType int resolveNetType(Network network, NetworkCapabilities capabilities, Record old) {
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+            return NetStateManager.NetType.TYPE_WIFI;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+            int networkType = cellularNetworkType;
+            if (networkType != TelephonyManager.NETWORK_TYPE_UNKNOWN) {
+                return NetStateManager.getNetTypeBySubType(networkType, null);
+            }
+            if (old != null && old.transport == NetworkCapabilities.TRANSPORT_CELLULAR) {
+                return old.netType;
+            }
+            return queryCellularNetType(network);
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+            return NetStateManager.NetType.TYPE_ETHERNET;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_BLUETOOTH)) {
+            return NetStateManager.NetType.TYPE_BLUETOOTH;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN)) {
+            return NetStateManager.NetType.TYPE_VPN;
+        }
+        return NetStateManager.NetType.TYPE_UNKNOWN;
+    }
+
+    /**
+     * 向系统查询移动网络的网络类型，会产生跨进程调用
+     */
+    private @NetStateManager.NetType int queryCellularNetType(Network network) {
+        try {
+            return NetStateManager.getNetWorkType(cm.getNetworkInfo(network));
+        } catch (Exception e) {
+            return NetStateManager.NetType.TYPE_UNKNOWN;
+        }
+    }
+
+    /**
+     * 网络记录
+     */
+    static final class Record {
+
+        final NetworkCapabilities capabilities;
+        final LinkProperties linkProperties;
+        /** 主要的传输类型，取值为NetworkCapabilities.TRANSPORT_XXX，未知时为{@link NetStateManager.NetType#TYPE_UNKNOWN} */
+        final int transport;
+        final @NetStateManager.NetType int netType;
+
+        private Record(NetworkCapabilities capabilities, LinkProperties linkProperties, int transport, int netType) {
+            this.capabilities = capabilities;
+            this.linkProperties = linkProperties;
+            this.transport = transport;
+            this.netType = netType;
+        }
+    }
+}
@@ -16,7 +16,7 @@ import java.util.HashMap;
  * @author QXTX-WIN
  * <p><b>Create Date</b></p> 2021/7/14 17:12
  * <p><b>Description</b></p> 基础的状态栏view，可能有些图标无默认方案，需要根据实际业务来实现。
- * · 预置控件id：移动网络信号（主信号+副信号），信号类型，wifi，电池，耳机，飞行模式
+ * · 预置控件id：移动网络信号（主信号+副信号），信号类型，数据上行/下行，wifi，电池，耳机，飞行模式
  * · 当为此控件设置layout属性时，目标layout中存在预置控件id的功能
  * · 真正的用户状态栏元素为其中的子控件，即{@link #contentView}，通过{@link #getContentView()}获得
  */
@@ -41,6 +41,16 @@ public class BaseStatusBar extends FrameLayout implements IStatusBar {
      */
     protected View networkTypeView;
 
+    /**
+     * 数据上行图标
+     */
+    protected View upLinkView;
+
+    /**
+     * 数据下行图标
+     */
+    protected View downLinkView;
+
     /**
      * 飞行模式图标
      */
@@ -103,6 +113,8 @@ public class BaseStatusBar extends FrameLayout implements IStatusBar {
 
         simView = contentView.findViewById(R.id.sb_sim);
         networkTypeView = contentView.findViewById(R.id.sb_networkType);
+        upLinkView = contentView.findViewById(R.id.sb_upLink);
+        downLinkView = contentView.findViewById(R.id.sb_downLink);
         airplaneModeView = contentView.findViewById(R.id.sb_airplaneMode);
         headsetView = contentView.findViewById(R.id.sb_headset);
 
@@ -141,6 +153,7 @@ public class BaseStatusBar extends FrameLayout implements IStatusBar {
             if (networkTypeView != null) {
                 networkTypeView.setVisibility(GONE);
             }
+            updateTransferState(false, StatusBarMgr.TRANSFER_UNKNOWN);
 
             //蓝牙应该被隐藏，如果是蓝牙耳机
         }
@@ -165,6 +178,9 @@ public class BaseStatusBar extends FrameLayout implements IStatusBar {
             case NetStateManager.NetType.TYPE_5G:
                 resId = R.drawable.sb_network_5g_ic;
                 break;
+            case NetStateManager.NetType.TYPE_ETHERNET:
+                resId = R.drawable.sb_network_ethernet_ic;
+                break;
             case NetStateManager.NetType.TYPE_WIFI:
                 //LYX_TAG 2021/7/20 23:34 这里应该使用线性的图案来做，以支持自定义的信号级数（自己手写个svg）
                 //  通过最大等级和图标高度得到扇形边长。背景色为最大扇形阴影，前景色为当前信号强度扇形（通过fraction来计算）
@@ -183,6 +199,8 @@ public class BaseStatusBar extends FrameLayout implements IStatusBar {
                 }
                 break;
             case NetStateManager.NetType.TYPE_2G:
+            case NetStateManager.NetType.TYPE_VPN:
+            case NetStateManager.NetType.TYPE_BLUETOOTH:
             case NetStateManager.NetType.TYPE_NONE:
             case NetStateManager.NetType.TYPE_UNKNOWN:
             default:
@@ -197,6 +215,25 @@ public class BaseStatusBar extends FrameLayout implements IStatusBar {
         } else {
             networkTypeView.setBackgroundResource(resId);
         }
+        updateTransferState(networkEnable, transferState);
+    }
+
+    /**
+     * 更新数据上行、下行图标
+     * @param networkEnable 网络类型图标是否可见
+     * @param transferState 数据传输状态，取值见{@link StatusBarMgr.TransferState}
+     */
+    private void updateTransferState(boolean networkEnable, int transferState) {
+        boolean upload = networkEnable
+                && (transferState == StatusBarMgr.TRANSFER_UPLOAD || transferState == StatusBarMgr.TRANSFER_DUAL);
+        boolean download = networkEnable
+                && (transferState == StatusBarMgr.TRANSFER_DOWNLOAD || transferState == StatusBarMgr.TRANSFER_DUAL);
+        if (upLinkView != null) {
+            upLinkView.setVisibility(upload ? VISIBLE : GONE);
+        }
+        if (downLinkView != null) {
+            downLinkView.setVisibility(download ? VISIBLE : GONE);
+        }
     }
 
     @Override
@@ -31,8 +31,10 @@ import java.util.HashMap;
  * · sim信号图标的UI方案
  * · 状态栏高对比度主题色的支持
  * · 对于部分纯色背景或者显式设置了背景色的界面，支持沉浸式状态栏，默认启用此方案，可以通过{@link #setImmersive(boolean)}
+ * · 实现了{@link IDeltaStatusBar}，由StatusBarMgr驱动时只刷新变化的部分，不再逐项比较旧值
+ * · 可选的网速显示，见{@link StatusBarMgr#setSpeedIndicatorEnable(boolean)}。网速文字取自缓存，逐秒刷新时不产生新的字符串
  */
-public class DefaultStatusBar extends BaseStatusBar {
+public class DefaultStatusBar extends BaseStatusBar implements IDeltaStatusBar {
 
     /** 仿照View.setTag(int, Object), 记录子控件的某些数据。在view被解绑后，立即清除这些数据 */
     private SparseArray<Object> keyedTags = new SparseArray<>(4);
@@ -52,6 +54,13 @@ public class DefaultStatusBar extends BaseStatusBar {
     /** 电量文字百分比 */
     private TextView batteryTextView;
 
+    /** 网速区域 */
+    private View speedLayer;
+    private TextView speedDownTextView;
+    private TextView speedUpTextView;
+    private final SpeedFormatter speedDownFormatter = new SpeedFormatter("↓");
+    private final SpeedFormatter speedUpFormatter = new SpeedFormatter("↑");
+
     /**
      * Instantiates a new Default status bar.
      *
@@ -75,6 +84,10 @@ public class DefaultStatusBar extends BaseStatusBar {
         batteryIconView = findViewById(R.id.batteryIcon);
         batteryTextView = findViewById(R.id.batteryText);
 
+        speedLayer = findViewById(R.id.speedLayer);
+        speedDownTextView = findViewById(R.id.speedDownText);
+        speedUpTextView = findViewById(R.id.speedUpText);
+
         Drawable drawable = contentView.getBackground();
         if (drawable instanceof ColorDrawable) {
             themeColor = ((ColorDrawable)drawable).getColor();
@@ -115,6 +128,10 @@ public class DefaultStatusBar extends BaseStatusBar {
         }
         keyedTags.put(airplaneModeView.getId(), enable);
 
+        applyAirplane(enable);
+    }
+
+    private void applyAirplane(boolean enable) {
         super.onAirplaneChanged(enable);
 
         if (enable) {
@@ -142,6 +159,10 @@ public class DefaultStatusBar extends BaseStatusBar {
         }
         keyedTags.put(headsetView.getId(), exist);
 
+        applyHeadset(exist);
+    }
+
+    private void applyHeadset(boolean exist) {
         super.onHeadSetChanged(exist);
 
         if (immersive) {
@@ -169,6 +190,10 @@ public class DefaultStatusBar extends BaseStatusBar {
         }
         keyedTags.put(networkTypeView.getId(), new Pair<>(type, new Object[] {signalFraction, transferState}));
 
+        applyNetworkType(type, signalFraction, transferState);
+    }
+
+    private void applyNetworkType(int type, float signalFraction, int transferState) {
         if (networkTypeGray != null) {
             networkTypeGray.setVisibility(GONE);
         }
@@ -211,6 +236,10 @@ public class DefaultStatusBar extends BaseStatusBar {
         }
         keyedTags.put(batteryView.getId(), new Pair<>(fraction, isCharging));
 
+        applyBattery(fraction, isCharging);
+    }
+
+    private void applyBattery(float fraction, boolean isCharging) {
         update(batteryView, () -> {
             if (batteryTextView != null) {
                 String targetText = (int)(fraction * 100 + 0.5f) + "%";
@@ -235,6 +264,41 @@ public class DefaultStatusBar extends BaseStatusBar {
         });
     }
 
+    @Override
+    public void onThroughputChanged(long downloadRate, long uploadRate) {
+        if (speedLayer == null || !isUiThread() || isGone()) {
+            return;
+        }
+
+        applyThroughput(downloadRate, uploadRate);
+    }
+
+    private void applyThroughput(long downloadRate, long uploadRate) {
+        if (speedLayer == null) {
+            return;
+        }
+        if (downloadRate < 0 || uploadRate < 0) {
+            speedLayer.setVisibility(GONE);
+            return;
+        }
+
+        //格式化结果取自缓存，相同的文字总是同一个对象，直接比较引用即可
+        setSpeedText(speedDownTextView, speedDownFormatter.format(downloadRate));
+        setSpeedText(speedUpTextView, speedUpFormatter.format(uploadRate));
+        if (speedLayer.getVisibility() != VISIBLE) {
+            speedLayer.setVisibility(VISIBLE);
+            if (immersive) {
+                updateSpeedThemeColor();
+            }
+        }
+    }
+
+    private static void setSpeedText(TextView textView, String text) {
+        if (textView != null && textView.getText() != text) {
+            textView.setText(text);
+        }
+    }
+
     /**
      * 注意飞行模式下不应显示sim信号图标
      * @param simInfoMap sim卡信息集
@@ -246,6 +310,10 @@ public class DefaultStatusBar extends BaseStatusBar {
             return;
         }
 
+        applySim(simInfoMap, primarySubId);
+    }
+
+    private void applySim(HashMap<Integer, StatusBarMgr.SimInfo> simInfoMap, int primarySubId) {
         ((SimSignalView) simView).update(simInfoMap, primarySubId);
 
         if (immersive) {
@@ -253,6 +321,39 @@ public class DefaultStatusBar extends BaseStatusBar {
         }
     }
 
+    @Override
+    public void onStateChanged(StatusBarState state, int changeMask) {
+        if (!isUiThread() || isGone()) {
+            return;
+        }
+
+        //变化由掩码给出，直接刷新对应的图标。同时丢弃旧的比较记录，避免之后的直接调用被误判为未改变
+        boolean airplaneChanged = (changeMask & CHANGE_AIRPLANE) != 0;
+        if (airplaneChanged && airplaneModeView != null) {
+            keyedTags.remove(airplaneModeView.getId());
+            applyAirplane(state.isAirplane());
+        }
+        //退出飞行模式时，sim和网络图标需要重新刷新才能恢复显示
+        if ((airplaneChanged || (changeMask & CHANGE_SIM_ANY) != 0) && simView != null) {
+            applySim(state.getSimInfoMap(), state.getPrimarySubId());
+        }
+        if ((airplaneChanged || (changeMask & CHANGE_NETWORK_ANY) != 0) && networkTypeView != null) {
+            keyedTags.remove(networkTypeView.getId());
+            applyNetworkType(state.getNetType(), state.getSignalFraction(), state.getTransferState());
+        }
+        if ((changeMask & CHANGE_HEADSET) != 0 && headsetView != null) {
+            keyedTags.remove(headsetView.getId());
+            applyHeadset(state.isHeadsetExist());
+        }
+        if ((changeMask & CHANGE_BATTERY_ANY) != 0 && batteryView != null && state.getBatteryFraction() <= 1f) {
+            keyedTags.remove(batteryView.getId());
+            applyBattery(state.getBatteryFraction(), state.isCharging());
+        }
+        if ((changeMask & CHANGE_THROUGHPUT) != 0) {
+            applyThroughput(state.getDownloadRate(), state.getUploadRate());
+        }
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
@@ -324,6 +425,19 @@ public class DefaultStatusBar extends BaseStatusBar {
         updateSimThemeColor();
     }
 
+    /**
+     * On sim changed.
+     *
+     * @param levels 各sim卡的信号等级，元素0为主卡，其余为按卡槽顺序排列的副卡
+     */
+    public void onSimChanged(int[] levels) {
+        if (simView != null) {
+            ((SimSignalView) simView).update(levels);
+        }
+
+        updateSimThemeColor();
+    }
+
     private void updateSimThemeColor() {
         if (simView == null || simView.getVisibility() != VISIBLE
                 || themeColor == Color.TRANSPARENT) {
@@ -368,6 +482,27 @@ public class DefaultStatusBar extends BaseStatusBar {
         });
     }
 
+    private void updateSpeedThemeColor() {
+        if (speedLayer == null || speedLayer.getVisibility() != VISIBLE || themeColor == Color.TRANSPARENT) {
+            return;
+        }
+        post(() -> {
+            if (speedDownTextView != null) {
+                speedDownTextView.setTextColor(themeColor);
+            }
+            if (speedUpTextView != null) {
+                speedUpTextView.setTextColor(themeColor);
+            }
+        });
+    }
+
+    private static void tintBackground(View view, int color) {
+        Drawable drawable = view == null ? null : view.getBackground();
+        if (drawable != null) {
+            drawable.setTint(color);
+        }
+    }
+
     private void updateNetworkTypeThemeColor(boolean isWifi, float signalFraction) {
         if (networkTypeView == null || networkTypeView.getVisibility() != VISIBLE
                 || themeColor == Color.TRANSPARENT) {
@@ -381,6 +516,8 @@ public class DefaultStatusBar extends BaseStatusBar {
             }
             drawable.setTint(themeColor);
             networkTypeView.setBackground(drawable);
+            tintBackground(upLinkView, themeColor);
+            tintBackground(downLinkView, themeColor);
 
             if (networkTypeGray == null) {
                 return;
@@ -451,6 +588,7 @@ public class DefaultStatusBar extends BaseStatusBar {
         updateNetworkTypeThemeColor(netType == NetStateManager.NetType.TYPE_WIFI, signalFraction);
         updateBatteryThemeColor();
         updateSimThemeColor();
+        updateSpeedThemeColor();
     }
 
     /**
@@ -469,6 +607,7 @@ public class DefaultStatusBar extends BaseStatusBar {
         updateNetworkTypeThemeColor(netType == NetStateManager.NetType.TYPE_WIFI, signalFraction);
         updateBatteryThemeColor();
         updateSimThemeColor();
+        updateSpeedThemeColor();
     }
 
     /** 不允许获得子控件 */
@@ -0,0 +1,71 @@
+package com.qxtx.idea.statusbar.view;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 15:12
+ * <p><b>Description</b></p> 增量式的状态栏接口，可选实现。
+ * <pre>
+ *  · 每一帧最多回调一次，参数为完整的不可变状态快照，以及相对于上一次回调的变化掩码
+ *  · 实现者可以根据掩码跳过未改变的部分，无需自行记录和比较旧值
+ *  · 状态栏对象未实现此接口时，仍通过{@link IStatusBar}的各个回调方法更新，见{@link StatusBarStateAdapter}
+ *  · 总是在UI线程中回调
+ * </pre>
+ */
+public interface IDeltaStatusBar {
+
+    /** 电量改变 */
+    int CHANGE_BATTERY = 1;
+    /** 充电状态改变 */
+    int CHANGE_CHARGING = 1 << 1;
+    /** 主卡改变 */
+    int CHANGE_PRIMARY_SUB = 1 << 2;
+    /** sim卡的卡槽、subId、sim状态或服务状态改变 */
+    int CHANGE_SIM_SLOTS = 1 << 3;
+    /** 网络类型改变 */
+    int CHANGE_NET_TYPE = 1 << 4;
+    /** wifi信号强度改变 */
+    int CHANGE_WIFI_FRACTION = 1 << 5;
+    /** 数据传输状态改变 */
+    int CHANGE_TRANSFER = 1 << 6;
+    /** 耳机状态改变 */
+    int CHANGE_HEADSET = 1 << 7;
+    /** 飞行模式改变 */
+    int CHANGE_AIRPLANE = 1 << 8;
+    /** 网速改变 */
+    int CHANGE_THROUGHPUT = 1 << 9;
+
+    /** 卡槽0的信号等级改变，其它卡槽依次左移，见{@link #simLevelMask(int)} */
+    int CHANGE_SIM_LEVEL_SLOT0 = 1 << 16;
+    /** 任一卡槽的信号等级改变 */
+    int CHANGE_SIM_LEVEL_ALL = 0xffff << 16;
+
+    /** sim相关的全部改变 */
+    int CHANGE_SIM_ANY = CHANGE_PRIMARY_SUB | CHANGE_SIM_SLOTS | CHANGE_SIM_LEVEL_ALL;
+    /** 网络相关的全部改变 */
+    int CHANGE_NETWORK_ANY = CHANGE_NET_TYPE | CHANGE_WIFI_FRACTION | CHANGE_TRANSFER;
+    /** 电池相关的全部改变 */
+    int CHANGE_BATTERY_ANY = CHANGE_BATTERY | CHANGE_CHARGING;
+
+    /** 全部改变 */
+    int CHANGE_ALL = CHANGE_SIM_ANY | CHANGE_NETWORK_ANY | CHANGE_BATTERY_ANY | CHANGE_HEADSET | CHANGE_AIRPLANE | CHANGE_THROUGHPUT;
+
+    /**
+     * 获取指定卡槽的信号等级变化掩码
+     * @param slotId 卡槽id，范围为[0,15]，超出范围时返回{@link #CHANGE_SIM_LEVEL_ALL}
+     * @return 变化掩码
+     */
+    static int simLevelMask(int slotId) {
+        if (slotId < 0 || slotId > 15) {
+            return CHANGE_SIM_LEVEL_ALL;
+        }
+        return CHANGE_SIM_LEVEL_SLOT0 << slotId;
+    }
+
+    /**
+     * 状态改变
+     *
+     * @param state      当前的完整状态快照
+     * @param changeMask 相对于上一次回调的变化掩码，取值为CHANGE_XXX系列常量的组合
+     */
+    void onStateChanged(StatusBarState state, int changeMask);
+}
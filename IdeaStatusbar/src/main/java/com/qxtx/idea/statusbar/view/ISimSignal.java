@@ -16,6 +16,17 @@ public interface ISimSignal {
      */
     void update(int primaryLevel, int subLevel);
 
+    /**
+     * 更新控件，支持任意数量的sim卡。默认只取前两张卡，转发到{@link #update(int, int)}，支持多张卡的控件应重写此方法
+     *
+     * @param levels 各sim卡的信号等级，元素0为主卡，其余为按卡槽顺序排列的副卡。小于0表示该卡不可用
+     */
+    default void update(int[] levels) {
+        int primaryLevel = levels != null && levels.length > 0 ? levels[0] : -1;
+        int subLevel = levels != null && levels.length > 1 ? levels[1] : -1;
+        update(primaryLevel, subLevel);
+    }
+
     /**
      * 设置主题色
      * @param color the color
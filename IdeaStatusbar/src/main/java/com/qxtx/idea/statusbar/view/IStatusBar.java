@@ -68,6 +68,15 @@ public interface IStatusBar {
      */
     void onHeadSetChanged(boolean exist);
 
+    /**
+     * 网速改变，只在启用了网速显示时回调，见{@link StatusBarMgr#setSpeedIndicatorEnable(boolean)}
+     *
+     * @param downloadRate 下行速率，单位为字节/秒，为-1时表示隐藏网速
+     * @param uploadRate   上行速率，单位为字节/秒，为-1时表示隐藏网速
+     */
+    default void onThroughputChanged(long downloadRate, long uploadRate) {
+    }
+
     /**
      * 是否处于UI线程
      * @return the boolean
@@ -8,6 +8,7 @@ import android.graphics.Paint;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.Nullable;
 import android.support.annotation.UiThread;
+import android.telephony.TelephonyManager;
 import android.util.AttributeSet;
 import android.view.View;
 
@@ -15,14 +16,14 @@ import com.qxtx.idea.statusbar.R;
 import com.qxtx.idea.statusbar.StatusBarLog;
 import com.qxtx.idea.statusbar.StatusBarMgr;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 
 /**
  * @author QXTX-WORK
  * <p><b>Create Date</b></p> 2021/9/13 19:01
- * <p><b>Description</b></p> sim自定义控件，支持双卡。4格信号表示，初始状态为sim均不可用状态。
+ * <p><b>Description</b></p> sim自定义控件，支持任意数量的sim卡。4格信号表示，初始状态为sim均不可用状态。
+ * 主卡信号绘制为阶梯状，占据控件的上部；其余sim卡按卡槽顺序，各占一行绘制在主卡信号下方。
  * 注意，只要主卡不可用，不管副卡是否可用，均视为全部sim不可用状态 · 暂不支持{@link #setPadding(int, int, int, int)} 和  {@link #setPaddingRelative(int, int, int, int)}
  */
 public class SimSignalView extends View implements ISimSignal {
@@ -42,16 +43,22 @@ public class SimSignalView extends View implements ISimSignal {
      */
     public static final int LEVEL_NO_SIGNAL = -1;
 
+    /** 信号单元的数量 */
+    private static final int UNIT_COUNT = 4;
+
     private final int DEF_FORE_COLOR = Color.WHITE;
     private final float DEF_CORNER_RADIUS_X = 0.2f;
     private final float DEF_CORNER_RADIUS_Y = 0.2f;
     private final int DEF_BG_COLOR = Color.parseColor("#676767");
 
-    /** 主sim信号等级，有效等级范围为[0, 4]，如果为{@link #LEVEL_NO_SIGNAL}则说明无信号 */
-    private int primaryLevel;
+    /**
+     * 各行的信号等级，元素0为主卡，其余为副卡。有效等级范围为[0, 4]。
+     * 长度即为绘制的行数，为0时表示无可用sim卡
+     */
+    private int[] levels = new int[0];
 
-    /** 副sim信号等级，有效等级范围为[0, 4]，如果为{@link #LEVEL_NO_SIGNAL}则说明无信号 */
-    private int subLevel;
+    /** 按卡槽整理sim信息时使用的临时数组，只在UI线程中使用 */
+    private int[] slotLevels = new int[0];
 
     /** 主题色，包括有效信号的颜色，以及sim不可用图标的颜色 */
     private int themeColor;
@@ -61,6 +68,18 @@ public class SimSignalView extends View implements ISimSignal {
     /** 矩形圆角半径，元素0为椭圆x半径占矩形x百分值，元素1为椭圆y半径占矩形y百分值。范围均为(0, 0.5f]，默认均为0.2f */
     private final float[] cornerRadius;
 
+    /** 预先计算几何数据的最大行数，不小于设备的卡槽数量，只增不减 */
+    private int maxRows;
+    /** 信号单元的左右边界，每个单元占2个元素 */
+    private final float[] unitX = new float[UNIT_COUNT * 2];
+    /** 以(行数-1)为下标，对应行数下每一行信号单元的上边界，每行占{@link #UNIT_COUNT}个元素 */
+    private float[][] unitTops = new float[0][];
+    /** 以(行数-1)为下标，对应行数下每一行信号单元的下边界 */
+    private float[][] rowBottoms = new float[0][];
+    /** 以(行数-1)为下标，对应行数下的圆角y轴半径 */
+    private float[] radiusYs = new float[0];
+    private float radiusX;
+
     /**
      * Instantiates a new Sim signal view.
      *
@@ -75,6 +94,7 @@ public class SimSignalView extends View implements ISimSignal {
         noSimDrawable = getResources().getDrawable(R.drawable.sb_signal_disabled_ic);
 
         paint = new Paint();
+        paint.setStyle(Paint.Style.FILL);
 
         float cornerRadiusX = DEF_CORNER_RADIUS_X;
         float cornerRadiusY = DEF_CORNER_RADIUS_Y;
@@ -83,10 +103,8 @@ public class SimSignalView extends View implements ISimSignal {
         if (attrs != null) {
             TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.SimSignalView);
             int primarySimLevel = typedArray.getInt(R.styleable.SimSignalView_primaryLevel, LEVEL_NO_SIGNAL);
-            primaryLevel = primarySimLevel < 0 ? LEVEL_NO_SIGNAL : primarySimLevel;
-
             int subSimLevel = typedArray.getInt(R.styleable.SimSignalView_subLevel, LEVEL_NO_SIGNAL);
-            subLevel = subSimLevel < 0 ? LEVEL_NO_SIGNAL : subSimLevel;
+            levels = toRows(new int[] {primarySimLevel, subSimLevel});
 
             cornerRadiusX = typedArray.getFloat(R.styleable.SimSignalView_roundRectRadiusX, cornerRadiusX);
             cornerRadiusY = typedArray.getFloat(R.styleable.SimSignalView_roundRectRadiusY, cornerRadiusY);
@@ -103,6 +121,8 @@ public class SimSignalView extends View implements ISimSignal {
                 Math.min(DEF_CORNER_RADIUS_MAX, cornerRadiusX),
                 Math.min(DEF_CORNER_RADIUS_MAX, cornerRadiusY)};
 
+        maxRows = Math.max(2, getPhoneCount(context));
+
         invalidate();
     }
 
@@ -119,14 +139,21 @@ public class SimSignalView extends View implements ISimSignal {
 
     @Override
     public void update(int primaryLevel, int subLevel) {
-        primaryLevel = Math.min(4, primaryLevel);
-        primaryLevel = primaryLevel < 0 ? LEVEL_NO_SIGNAL : primaryLevel;
-        subLevel = Math.min(4, subLevel);
-        subLevel = subLevel < 0 ? LEVEL_NO_SIGNAL : subLevel;
-
-        if (this.primaryLevel != primaryLevel || this.subLevel != subLevel) {
-            this.primaryLevel = primaryLevel;
-            this.subLevel = subLevel;
+        update(new int[] {primaryLevel, subLevel});
+    }
+
+    @Override
+    public void update(int[] levels) {
+        int[] rows = toRows(levels);
+        if (!Arrays.equals(this.levels, rows)) {
+            this.levels = rows;
+            if (rows.length > maxRows) {
+                //卡槽数量超出预期，在绘制之前扩充几何数据
+                maxRows = rows.length;
+                if (getWidth() > 0 && getHeight() > 0) {
+                    computeGeometry(maxRows);
+                }
+            }
             postInvalidate();
         } else {
             StatusBarLog.d("状态变化，不更新");
@@ -148,80 +175,129 @@ public class SimSignalView extends View implements ISimSignal {
 
         StatusBarLog.d("即将更新状态栏sim图标... 主卡subId=" + primarySubId + ", sim信息集=" + (simInfoMap == null ? null : simInfoMap.toString()));
 
-        boolean isSimExist = simInfoMap != null && !simInfoMap.isEmpty();
-
         if (StatusBarMgr.isAirplaneMode(appContext)) {
             StatusBarLog.d("飞行模式下不显示sim卡信号");
             //飞行模式，隐藏状态栏中所有的sim信号图标
-            if (primaryLevel != LEVEL_NO_SIGNAL || subLevel != LEVEL_NO_SIGNAL) {
-                primaryLevel = LEVEL_NO_SIGNAL;
-                subLevel = LEVEL_NO_SIGNAL;
+            if (levels.length != 0) {
+                levels = new int[0];
                 invalidate();
             }
             setVisibility(GONE);
             return;
         }
 
-        List<Integer> slotIdList = null;
-        boolean isSimValid = false;
-        if (simInfoMap != null) {
+        //未处于飞行模式，无论如何均显示sim占位
+        setVisibility(VISIBLE);
+
+        //按卡槽整理出各sim卡的信号等级，主卡单独记录，只需遍历一次sim信息集
+        int primaryLevel = LEVEL_NO_SIGNAL;
+        int slotCount = 0;
+        if (simInfoMap != null && !simInfoMap.isEmpty()) {
+            for (Integer slotId : simInfoMap.keySet()) {
+                slotCount = Math.max(slotCount, slotId + 1);
+            }
+            if (slotLevels.length < slotCount) {
+                slotLevels = new int[slotCount];
+            }
+            Arrays.fill(slotLevels, 0, slotCount, LEVEL_NO_SIGNAL);
+
             for (StatusBarMgr.SimInfo info : simInfoMap.values()) {
                 if (info != null
                         //LYX_TAG 2021/9/6 11:24 需求变动：不再检查sim卡的数据业务是否可用，只要有卡在，就显示信号（假信号）
                         //  原代码：&& StatusBarMgr.SimInfo.isSimReady(info.getSimState()) && StatusBarMgr.SimInfo.isSimDataReg(info.getServiceState())) {
-                        && StatusBarMgr.SimInfo.isSimReady(info.getSimState())) {
-
-                    isSimValid = true;
-
-                    if (slotIdList == null) {
-                        slotIdList = new ArrayList<>();
+                        && StatusBarMgr.SimInfo.isSimReady(info.getSimState())
+                        && info.getSlotId() >= 0 && info.getSlotId() < slotCount) {
+
+                    int level = Math.max(0, Math.min(UNIT_COUNT, info.getSignalLevel()));
+                    if (info.getSubId() == primarySubId) {
+                        primaryLevel = level;
+                    } else {
+                        slotLevels[info.getSlotId()] = level;
                     }
-                    slotIdList.add(info.getSlotId());
                 }
             }
         }
 
-        //未处于飞行模式，无论如何均显示sim占位
-        setVisibility(VISIBLE);
-
-        //计算出当前主卡/副卡的信号等级
-        int newPrimaryLevel = Integer.MIN_VALUE;
-        int newSubLevel = Integer.MIN_VALUE;
-        if (!isSimExist || !isSimValid) {
-            StatusBarLog.d("无sim卡或无不可用sim卡");
-            newPrimaryLevel = LEVEL_NO_SIGNAL;
-            newSubLevel = LEVEL_NO_SIGNAL;
-        } else {
-            for (Integer slotId : slotIdList) {
-                StatusBarMgr.SimInfo info = simInfoMap.get(slotId);
-                if (info == null) {
-                    continue;
-                }
-                int level = info.getSignalLevel();
-                if (info.getSubId() == primarySubId) {
-                    newPrimaryLevel = level;
-                } else {
-                    newSubLevel = level;
+        int rowCount = 0;
+        if (primaryLevel >= 0) {
+            rowCount = 1;
+            for (int i = 0; i < slotCount; i++) {
+                if (slotLevels[i] >= 0) {
+                    rowCount++;
                 }
             }
+        } else {
+            StatusBarLog.d("无sim卡或主卡不可用");
         }
 
-        if (newPrimaryLevel == primaryLevel && newSubLevel == subLevel) {
+        if (isSameRows(primaryLevel, rowCount, slotCount)) {
             return;
         }
 
-        primaryLevel = newPrimaryLevel;
-        subLevel = newSubLevel;
+        int[] rows = new int[rowCount];
+        if (rowCount > 0) {
+            rows[0] = primaryLevel;
+            int row = 1;
+            for (int i = 0; i < slotCount; i++) {
+                if (slotLevels[i] >= 0) {
+                    rows[row++] = slotLevels[i];
+                }
+            }
+        }
+        levels = rows;
         invalidate();
     }
 
+    /** 整理后的sim信号等级是否与当前绘制的一致 */
+    private boolean isSameRows(int primaryLevel, int rowCount, int slotCount) {
+        if (levels.length != rowCount) {
+            return false;
+        }
+        if (rowCount == 0) {
+            return true;
+        }
+        if (levels[0] != primaryLevel) {
+            return false;
+        }
+        int row = 1;
+        for (int i = 0; i < slotCount; i++) {
+            if (slotLevels[i] >= 0 && levels[row++] != slotLevels[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将外部传入的信号等级整理为绘制的行：主卡不可用时视为无卡，副卡中不可用的被忽略
+     */
+    private static int[] toRows(int[] levels) {
+        if (levels == null || levels.length == 0 || levels[0] < 0) {
+            return new int[0];
+        }
+        int count = 0;
+        for (int level : levels) {
+            if (level >= 0) {
+                count++;
+            }
+        }
+        int[] rows = new int[count];
+        int row = 0;
+        for (int level : levels) {
+            if (level >= 0) {
+                rows[row++] = Math.min(UNIT_COUNT, level);
+            }
+        }
+        return rows;
+    }
+
     /**
      * 获取当前的主信号等级。当控件从未被更新时，将返回默认值而不是实际值
      *
      * @return the primary signal
      */
     protected int getPrimarySignal() {
-        return primaryLevel;
+        return getSignal(0);
     }
 
     /**
@@ -230,7 +306,26 @@ public class SimSignalView extends View implements ISimSignal {
      * @return the sub signal
      */
     protected int getSubSignal() {
-        return subLevel;
+        return getSignal(1);
+    }
+
+    /**
+     * 获取指定行的信号等级。当控件从未被更新时，将返回默认值而不是实际值
+     *
+     * @param row 行，0为主卡，其余为按卡槽顺序排列的副卡
+     * @return 信号等级，该行不存在时返回{@link #LEVEL_NO_SIGNAL}
+     */
+    protected int getSignal(int row) {
+        return row >= 0 && row < levels.length ? levels[row] : LEVEL_NO_SIGNAL;
+    }
+
+    /**
+     * 获取当前绘制的信号行数
+     *
+     * @return 信号行数，为0时表示无可用sim卡
+     */
+    protected int getSignalCount() {
+        return levels.length;
     }
 
     @Override
@@ -244,114 +339,146 @@ public class SimSignalView extends View implements ISimSignal {
         //禁止使用偏移
     }
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        computeNoSimBounds(w, h);
+        computeGeometry(maxRows);
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        byte signalCount = calculateSimNum();
-        switch (signalCount) {
-            case 0:
-                //无卡
-                drawSimDisabled(canvas);
-                break;
-            case 1:
-                //单卡
-                drawSingleSim(canvas);
-                break;
-            case 2:
-                //双卡
-                drawDualSim(canvas);
-                break;
+        int rows = levels.length;
+        if (rows == 0) {
+            //无卡
+            drawSimDisabled(canvas);
+            return;
+        }
+
+        if (rows > unitTops.length) {
+            //尚未确定尺寸，几何数据不可用
+            return;
+        }
+        float[] unitTop = unitTops[rows - 1];
+        float[] rowBottom = rowBottoms[rows - 1];
+        float radiusY = radiusYs[rows - 1];
+        for (int row = 0; row < rows; row++) {
+            int level = levels[row];
+            float b = rowBottom[row];
+            for (int i = 0; i < UNIT_COUNT; i++) {
+                int color = i < level ? themeColor : signalBgColor;
+                drawRoundRect(canvas, unitX[i * 2], unitTop[row * UNIT_COUNT + i], unitX[i * 2 + 1], b, radiusX, radiusY, color);
+            }
         }
     }
 
     /**
-     * 绘制双卡信号
+     * 计算信号单元的几何数据，1到maxRows行的数据均预先计算，绘制时直接取用。只在控件尺寸改变，或卡槽数量超出预期时计算
      * 信号单位宽度：3/16控件宽度
      * 信号单位之间的间距：1/12控件宽度
      * 信号矩形圆角x轴半径：1/5信号单位宽度，y轴半径：1/5信号单位高度
-     *  每个信号单元占据0.19控件高度
      *
-     * 主信号占据0.72控件高度
-     * 副信号占据0.18控件高度
-     * 两信号上下间隔0.1控件高度
+     * 单卡时，信号单元高度为1/4控件高度，铺满控件。
+     * 多卡时，主信号为4个单元高度的阶梯，每个副信号各占一行，高度为1个单元；每行之间间隔5/9单元高度。
+     * 双卡时即为：主信号占据0.72控件高度，副信号占据0.18控件高度，两信号上下间隔0.1控件高度
      */
-    private void drawDualSim(Canvas canvas) {
-        int viewH = getHeight();
+    private void computeGeometry(int maxRows) {
         int viewW = getWidth();
-        float simGap = viewH * 0.1f;
+        int viewH = getHeight();
         float unitW = viewW * 3 / 16f;
-        float unitH = viewH * 0.18f;
         float gapW = viewW / 12f;
-        float rrx = unitW * cornerRadius[0];
-        float rry = unitH * cornerRadius[1];
-
-        float l, t;
-        int color;
-        float primaryBottom = viewH - (unitH + simGap);
-        for (int i = 0; i < 4; i++) {
-            l = i * (unitW + gapW);
-
-            //主信号
-            t = viewH - simGap - unitH - (i + 1) * unitH;
-            color = i < primaryLevel ? themeColor : signalBgColor;
-            drawRoundRect(canvas, l, t, l + unitW, primaryBottom, rrx, rry, color);
-
-            //副信号
-            t = viewH - unitH;
-            color = i < subLevel ? themeColor : signalBgColor;
-            drawRoundRect(canvas, l, t, l + unitW, viewH, rrx, rry, color);
+
+        for (int i = 0; i < UNIT_COUNT; i++) {
+            float l = i * (unitW + gapW);
+            unitX[i * 2] = l;
+            unitX[i * 2 + 1] = l + unitW;
+        }
+        radiusX = unitW * cornerRadius[0];
+
+        float[][] tops = new float[maxRows][];
+        float[][] bottoms = new float[maxRows][];
+        float[] radiusY = new float[maxRows];
+        for (int rows = 1; rows <= maxRows; rows++) {
+            float unitH;
+            float rowGap;
+            if (rows == 1) {
+                unitH = viewH / 4f;
+                rowGap = 0;
+            } else {
+                unitH = viewH / (UNIT_COUNT + (rows - 1) * (1 + 5 / 9f));
+                rowGap = unitH * 5 / 9f;
+            }
+
+            float[] unitTop = new float[rows * UNIT_COUNT];
+            float[] rowBottom = new float[rows];
+            //副信号从控件底部开始，按卡槽顺序自下而上排列在主信号下方
+            float bottom = viewH;
+            for (int row = rows - 1; row >= 1; row--) {
+                rowBottom[row] = bottom;
+                for (int i = 0; i < UNIT_COUNT; i++) {
+                    unitTop[row * UNIT_COUNT + i] = bottom - unitH;
+                }
+                bottom -= unitH + rowGap;
+            }
+            rowBottom[0] = bottom;
+            for (int i = 0; i < UNIT_COUNT; i++) {
+                unitTop[i] = bottom - (i + 1) * unitH;
+            }
+
+            tops[rows - 1] = unitTop;
+            bottoms[rows - 1] = rowBottom;
+            radiusY[rows - 1] = unitH * cornerRadius[1];
         }
+        unitTops = tops;
+        rowBottoms = bottoms;
+        radiusYs = radiusY;
     }
 
     /**
-     * 绘制单卡信号，铺满控件
-     * 信号单位宽度：3/16控件宽度
-     * 信号单位高度：1/4控件高度
-     * 信号单位之间的间距：1/12控件宽度
-     * 信号矩形圆角x轴半径：1/5信号单位宽度，y轴半径：1/5信号单位高度
+     * 获取设备的卡槽数量
+     * @return 卡槽数量，无法获取时返回0
      */
-    private void drawSingleSim(Canvas canvas) {
-        int viewW = getWidth();
-        int viewH = getHeight();
-        float unitW = viewW * 3 / 16f;
-        float unitH = viewH / 4f;
-        float gapW = viewW / 12f;
-        float rrx = unitW * cornerRadius[0];
-        float rry = unitH * cornerRadius[1];
-        float startL, startT;
-        int color;
-        for (int i = 0; i < 4; i++) {
-            startL = i * (unitW + gapW);
-            startT = viewH - (i + 1) * unitH;
-            color = i < primaryLevel ? themeColor : signalBgColor;
-            drawRoundRect(canvas, startL, startT, startL + unitW, viewH, rrx, rry, color);
+    private static int getPhoneCount(Context context) {
+        try {
+            TelephonyManager tm = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+            return tm == null ? 0 : tm.getPhoneCount();
+        } catch (Exception e) {
+            return 0;
         }
     }
 
     /**
-     * 绘制无卡图标，尽可能地铺满控件
+     * 计算无卡图标的绘制区域，尽可能地铺满控件
      * 由于内置的svg资源的比例问题，因此这里强制使用比例尺寸缩放图形，以防止变形
      */
+    private void computeNoSimBounds(int w, int h) {
+        if (noSimDrawable == null) {
+            return;
+        }
+        float l = 0, t = 0, r = w, b = h;
+        float fixLen;
+        if (w > (h * 4 / 5f)) {
+            fixLen = h * 4 / 5f;
+            l = (w - fixLen) / 2f;
+            r = l + fixLen;
+        } else {
+            fixLen = w * 5 / 4f;
+            t = (h - fixLen) / 2f;
+            b = t + fixLen;
+        }
+
+        noSimDrawable.setBounds(
+                (int)(l + 0.5f), (int)(t + 0.5f),
+                (int)(r + 0.5f), (int)(b + 0.5f));
+    }
+
+    /**
+     * 绘制无卡图标
+     */
     private void drawSimDisabled(Canvas canvas) {
         if (noSimDrawable != null) {
-            int w = getWidth();
-            int h = getHeight();
-            float l = 0, t = 0, r = w, b = h;
-            float fixLen;
-            if (w > (h * 4 / 5f)) {
-                fixLen = h * 4 / 5f;
-                l = (w - fixLen) / 2f;
-                r = l + fixLen;
-            } else {
-                fixLen = w * 5 / 4f;
-                t = (h - fixLen) / 2f;
-                b = t + fixLen;
-            }
-
-            noSimDrawable.setBounds(
-                    (int)(l + 0.5f), (int)(t + 0.5f),
-                    (int)(r + 0.5f), (int)(b + 0.5f));
             noSimDrawable.setTint(themeColor);
             //DrawableCompat.setTint(noSimDrawable, themeColor);
             noSimDrawable.draw(canvas);
@@ -360,20 +487,7 @@ public class SimSignalView extends View implements ISimSignal {
 
     /** 绘制信号单元 */
     private void drawRoundRect(Canvas canvas, float l, float t, float r, float b, float rx, float ry, int color) {
-        paint.reset();
         paint.setColor(color);
-        paint.setStyle(Paint.Style.FILL);
         canvas.drawRoundRect(l, t, r, b, rx, ry, paint);
     }
-
-    private byte calculateSimNum() {
-        byte result = 0;
-        if (primaryLevel >= 0) {
-            result = 1;
-            if (subLevel >= 0) {
-                result = 2;
-            }
-        }
-        return result;
-    }
 }
@@ -0,0 +1,99 @@
+package com.qxtx.idea.statusbar.view;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 20:40
+ * <p><b>Description</b></p> 网速文字的格式化工具，结果取自缓存，重复的取值不会产生新的字符串。
+ * <pre>
+ *  · 以1024为进制，依次使用B/s、KB/s、MB/s、GB/s单位
+ *  · 数值小于10时保留一位小数（B/s除外），否则取整
+ *  · 每个单位的可能取值是有限的，第一次出现时生成字符串并缓存，之后直接返回缓存的对象
+ *  · 只应在UI线程中使用
+ * </pre>
+ */
+final class SpeedFormatter {
+
+    private static final String[] UNITS = {" B/s", " KB/s", " MB/s", " GB/s"};
+
+    /** 取整显示时的最大值，达到此值时进位到下一个单位 */
+    private static final int RADIX = 1024;
+
+    /** 一位小数显示的最大值（单位为0.1），达到此值时改为取整显示 */
+    private static final int DECIMAL_LIMIT = 100;
+
+    private final String prefix;
+
+    /** 取整显示的缓存，下标依次为单位、数值 */
+    private final String[][] integerCache = new String[UNITS.length][];
+
+    /** 一位小数显示的缓存，下标依次为单位、数值（单位为0.1） */
+    private final String[][] decimalCache = new String[UNITS.length][];
+
+    /**
+     * Instantiates a new Speed formatter.
+     *
+     * @param prefix 文字前缀，如方向箭头
+     */
+    SpeedFormatter(String prefix) {
+        this.prefix = prefix == null ? "" : prefix;
+    }
+
+    /**
+     * 格式化网速
+     *
+     * @param bytesPerSecond 速率，单位为字节/秒，小于0时视为0
+     * @return 格式化后的文字
+     */
+    String format(long bytesPerSecond) {
+        long value = Math.max(0, bytesPerSecond);
+        if (value < RADIX) {
+            return integerText(0, (int) value);
+        }
+
+        int unit = 1;
+        long divisor = RADIX;
+        while (unit < UNITS.length - 1 && value >= divisor * RADIX) {
+            unit++;
+            divisor *= RADIX;
+        }
+
+        long tenths = (value * 10 + divisor / 2) / divisor;
+        if (tenths < DECIMAL_LIMIT) {
+            return decimalText(unit, (int) tenths);
+        }
+        long integer = (value + divisor / 2) / divisor;
+        if (integer >= RADIX && unit < UNITS.length - 1) {
+            //四舍五入后达到进位值，如1023.6 KB/s显示为1.0 MB/s
+            return decimalText(unit + 1, 10);
+        }
+        return integerText(unit, (int) Math.min(integer, RADIX - 1));
+    }
+
+    private String integerText(int unit, int integer) {
+        String[] cache = integerCache[unit];
+        if (cache == null) {
+            cache = new String[RADIX];
+            integerCache[unit] = cache;
+        }
+        String text = cache[integer];
+        if (text == null) {
+            text = prefix + integer + UNITS[unit];
+            cache[integer] = text;
+        }
+        return text;
+    }
+
+    private String decimalText(int unit, int tenths) {
+        String[] cache = decimalCache[unit];
+        if (cache == null) {
+            cache = new String[DECIMAL_LIMIT];
+            decimalCache[unit] = cache;
+        }
+        String text = cache[tenths];
+        if (text == null) {
+            text = prefix + tenths / 10 + "." + tenths % 10 + UNITS[unit];
+            cache[tenths] = text;
+        }
+        return text;
+    }
+}
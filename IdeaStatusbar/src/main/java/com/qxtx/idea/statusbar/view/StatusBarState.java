@@ -0,0 +1,276 @@
+package com.qxtx.idea.statusbar.view;
+
+import com.qxtx.idea.statusbar.SimRecord;
+import com.qxtx.idea.statusbar.StatusBarMgr;
+import com.qxtx.idea.statusbar.tools.network.NetStateManager;
+
+import java.util.HashMap;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 15:20
+ * <p><b>Description</b></p> 状态栏的不可变状态快照，每一帧最多产生一个。
+ * 快照中的sim信息集在提交后不会再被修改，外部也不应修改它
+ * @see IDeltaStatusBar
+ */
+public final class StatusBarState {
+
+    private final HashMap<Integer, StatusBarMgr.SimInfo> simInfoMap;
+    private final int primarySubId;
+
+    private final float batteryFraction;
+    private final boolean isCharging;
+
+    private final @NetStateManager.NetType int netType;
+    private final float signalFraction;
+    private final @StatusBarMgr.TransferState int transferState;
+
+    private final boolean isHeadsetExist;
+    private final boolean isAirplane;
+
+    private final long downloadRate;
+    private final long uploadRate;
+
+    /**
+     * Instantiates a new Status bar state.
+     *
+     * @param simInfoMap      sim卡信息集
+     * @param primarySubId    主卡subId
+     * @param batteryFraction 电量百分比，范围为[0f,1f]
+     * @param isCharging      是否正在充电
+     * @param netType         网络类型等效值
+     * @param signalFraction  网络信号强度百分比，范围为[0f,1f]
+     * @param transferState   数据传输状态
+     * @param isHeadsetExist  是否存在耳机
+     * @param isAirplane      是否处于飞行模式
+     * @param downloadRate    下行速率，单位为字节/秒，未启用网速显示时为-1
+     * @param uploadRate      上行速率，单位为字节/秒，未启用网速显示时为-1
+     */
+    public StatusBarState(HashMap<Integer, StatusBarMgr.SimInfo> simInfoMap, int primarySubId,
+                          float batteryFraction, boolean isCharging,
+                          @NetStateManager.NetType int netType, float signalFraction, @StatusBarMgr.TransferState int transferState,
+                          boolean isHeadsetExist, boolean isAirplane, long downloadRate, long uploadRate) {
+        this.simInfoMap = simInfoMap;
+        this.primarySubId = primarySubId;
+        this.batteryFraction = batteryFraction;
+        this.isCharging = isCharging;
+        this.netType = netType;
+        this.signalFraction = signalFraction;
+        this.transferState = transferState;
+        this.isHeadsetExist = isHeadsetExist;
+        this.isAirplane = isAirplane;
+        this.downloadRate = downloadRate;
+        this.uploadRate = uploadRate;
+    }
+
+    /**
+     * 计算相对于旧快照的变化掩码
+     *
+     * @param old 旧快照，为null时视为全部改变
+     * @return 变化掩码，取值为{@link IDeltaStatusBar}的CHANGE_XXX系列常量的组合
+     */
+    public int diff(StatusBarState old) {
+        if (old == null) {
+            return IDeltaStatusBar.CHANGE_ALL;
+        }
+
+        int mask = 0;
+        if (batteryFraction != old.batteryFraction) {
+            mask |= IDeltaStatusBar.CHANGE_BATTERY;
+        }
+        if (isCharging != old.isCharging) {
+            mask |= IDeltaStatusBar.CHANGE_CHARGING;
+        }
+        if (primarySubId != old.primarySubId) {
+            mask |= IDeltaStatusBar.CHANGE_PRIMARY_SUB;
+        }
+        if (netType != old.netType) {
+            mask |= IDeltaStatusBar.CHANGE_NET_TYPE;
+        }
+        if (signalFraction != old.signalFraction) {
+            mask |= IDeltaStatusBar.CHANGE_WIFI_FRACTION;
+        }
+        if (transferState != old.transferState) {
+            mask |= IDeltaStatusBar.CHANGE_TRANSFER;
+        }
+        if (isHeadsetExist != old.isHeadsetExist) {
+            mask |= IDeltaStatusBar.CHANGE_HEADSET;
+        }
+        if (isAirplane != old.isAirplane) {
+            mask |= IDeltaStatusBar.CHANGE_AIRPLANE;
+        }
+        if (downloadRate != old.downloadRate || uploadRate != old.uploadRate) {
+            mask |= IDeltaStatusBar.CHANGE_THROUGHPUT;
+        }
+        if (simInfoMap != old.simInfoMap) {
+            mask |= diffSim(old.simInfoMap);
+        }
+        return mask;
+    }
+
+    /** 逐个卡槽比较sim信息 */
+    private int diffSim(HashMap<Integer, StatusBarMgr.SimInfo> oldMap) {
+        if (simInfoMap == null || oldMap == null) {
+            return IDeltaStatusBar.CHANGE_SIM_SLOTS | IDeltaStatusBar.CHANGE_SIM_LEVEL_ALL;
+        }
+
+        int mask = 0;
+        if (simInfoMap.size() != oldMap.size()) {
+            mask |= IDeltaStatusBar.CHANGE_SIM_SLOTS;
+        }
+        for (StatusBarMgr.SimInfo info : simInfoMap.values()) {
+            StatusBarMgr.SimInfo oldInfo = oldMap.get(info.getSlotId());
+            if (oldInfo == null) {
+                mask |= IDeltaStatusBar.CHANGE_SIM_SLOTS | IDeltaStatusBar.simLevelMask(info.getSlotId());
+                continue;
+            }
+            if (!SimRecord.equalsIgnoreLevel(info.getRecord(), oldInfo.getRecord())) {
+                mask |= IDeltaStatusBar.CHANGE_SIM_SLOTS;
+            }
+            if (info.getSignalLevel() != oldInfo.getSignalLevel()) {
+                mask |= IDeltaStatusBar.simLevelMask(info.getSlotId());
+            }
+        }
+        if ((mask & IDeltaStatusBar.CHANGE_SIM_SLOTS) == 0) {
+            //数量相同且均能找到对应卡槽，则不需要反向比较
+            return mask;
+        }
+        for (StatusBarMgr.SimInfo oldInfo : oldMap.values()) {
+            if (!simInfoMap.containsKey(oldInfo.getSlotId())) {
+                mask |= IDeltaStatusBar.simLevelMask(oldInfo.getSlotId());
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 获取sim卡信息集，键为slotId。每次调用返回新的集合，可以自由增删；其中的{@link StatusBarMgr.SimInfo}对象为只读，
+     * 修改时抛出{@link UnsupportedOperationException}，如需修改，使用{@link StatusBarMgr.SimInfo#deepCopy()}
+     * @return sim卡信息集，无sim信息时返回null
+     */
+    public HashMap<Integer, StatusBarMgr.SimInfo> getSimInfoMap() {
+        return simInfoMap == null ? null : new HashMap<>(simInfoMap);
+    }
+
+    /**
+     * 获取sim卡信息集的深拷贝，集合及其中的对象均可修改
+     * @return sim卡信息集，无sim信息时返回null
+     */
+    public HashMap<Integer, StatusBarMgr.SimInfo> cloneSimInfoMap() {
+        if (simInfoMap == null) {
+            return null;
+        }
+        HashMap<Integer, StatusBarMgr.SimInfo> result = new HashMap<>(simInfoMap.size() * 2);
+        for (HashMap.Entry<Integer, StatusBarMgr.SimInfo> entry : simInfoMap.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().deepCopy());
+        }
+        return result;
+    }
+
+    /**
+     * Gets primary sub id.
+     *
+     * @return 主卡subId
+     */
+    public int getPrimarySubId() {
+        return primarySubId;
+    }
+
+    /**
+     * Gets battery fraction.
+     *
+     * @return 电量百分比，范围为[0f,1f]
+     */
+    public float getBatteryFraction() {
+        return batteryFraction;
+    }
+
+    /**
+     * Is charging boolean.
+     *
+     * @return 是否正在充电
+     */
+    public boolean isCharging() {
+        return isCharging;
+    }
+
+    /**
+     * Gets net type.
+     *
+     * @return 网络类型等效值
+     */
+    public @NetStateManager.NetType int getNetType() {
+        return netType;
+    }
+
+    /**
+     * Gets signal fraction.
+     *
+     * @return 网络信号强度百分比，范围为[0f,1f]
+     */
+    public float getSignalFraction() {
+        return signalFraction;
+    }
+
+    /**
+     * Gets transfer state.
+     *
+     * @return 数据传输状态，取值见{@link StatusBarMgr.TransferState}
+     */
+    public @StatusBarMgr.TransferState int getTransferState() {
+        return transferState;
+    }
+
+    /**
+     * Is headset exist boolean.
+     *
+     * @return 是否存在耳机
+     */
+    public boolean isHeadsetExist() {
+        return isHeadsetExist;
+    }
+
+    /**
+     * Is airplane boolean.
+     *
+     * @return 是否处于飞行模式
+     */
+    public boolean isAirplane() {
+        return isAirplane;
+    }
+
+    /**
+     * Gets download rate.
+     *
+     * @return 下行速率，单位为字节/秒，未启用网速显示时为-1
+     */
+    public long getDownloadRate() {
+        return downloadRate;
+    }
+
+    /**
+     * Gets upload rate.
+     *
+     * @return 上行速率，单位为字节/秒，未启用网速显示时为-1
+     */
+    public long getUploadRate() {
+        return uploadRate;
+    }
+
+    @Override
+    public String toString() {
+        return "StatusBarState{" +
+                "simInfoMap=" + simInfoMap +
+                ", primarySubId=" + primarySubId +
+                ", batteryFraction=" + batteryFraction +
+                ", isCharging=" + isCharging +
+                ", netType=" + netType +
+                ", signalFraction=" + signalFraction +
+                ", transferState=" + transferState +
+                ", isHeadsetExist=" + isHeadsetExist +
+                ", isAirplane=" + isAirplane +
+                ", downloadRate=" + downloadRate +
+                ", uploadRate=" + uploadRate +
+                '}';
+    }
+}
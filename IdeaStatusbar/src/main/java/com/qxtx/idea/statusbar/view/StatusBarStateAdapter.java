@@ -0,0 +1,45 @@
+package com.qxtx.idea.statusbar.view;
+
+/**
+ * @author QXTX-WIN
+ * <p><b>Create Date</b></p> 2026/10/18 15:31
+ * <p><b>Description</b></p> 将增量式的状态回调转换为{@link IStatusBar}的各个回调方法，用于未实现{@link IDeltaStatusBar}的状态栏
+ */
+public final class StatusBarStateAdapter implements IDeltaStatusBar {
+
+    private final IStatusBar statusBar;
+
+    /**
+     * Instantiates a new Status bar state adapter.
+     *
+     * @param statusBar 目标状态栏
+     */
+    public StatusBarStateAdapter(IStatusBar statusBar) {
+        this.statusBar = statusBar;
+    }
+
+    @Override
+    public void onStateChanged(StatusBarState state, int changeMask) {
+        //飞行模式会影响sim和网络图标的显示，需要最先刷新。退出飞行模式时，sim和网络图标需要重新刷新才能恢复显示
+        boolean airplaneChanged = (changeMask & CHANGE_AIRPLANE) != 0;
+        if (airplaneChanged) {
+            statusBar.onAirplaneChanged(state.isAirplane());
+        }
+        if (airplaneChanged || (changeMask & CHANGE_SIM_ANY) != 0) {
+            //与以往一致，交给状态栏的是可以自由修改的副本
+            statusBar.onSimChanged(state.cloneSimInfoMap(), state.getPrimarySubId());
+        }
+        if (airplaneChanged || (changeMask & CHANGE_NETWORK_ANY) != 0) {
+            statusBar.onNetworkTypeChanged(state.getNetType(), state.getSignalFraction(), state.getTransferState());
+        }
+        if ((changeMask & CHANGE_HEADSET) != 0) {
+            statusBar.onHeadSetChanged(state.isHeadsetExist());
+        }
+        if ((changeMask & CHANGE_BATTERY_ANY) != 0) {
+            statusBar.onBatteryChanged(state.getBatteryFraction(), state.isCharging());
+        }
+        if ((changeMask & CHANGE_THROUGHPUT) != 0) {
+            statusBar.onThroughputChanged(state.getDownloadRate(), state.getUploadRate());
+        }
+    }
+}